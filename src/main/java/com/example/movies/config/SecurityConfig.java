@@ -1,6 +1,9 @@
 package com.example.movies.config;
 
+import com.example.movies.security.BCryptStrengthCalibrator;
 import com.example.movies.security.JwtAuthenticationFilter;
+import com.example.movies.security.PublicEndpoints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -9,14 +12,19 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import jakarta.servlet.DispatcherType;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
@@ -34,11 +42,9 @@ public class SecurityConfig {
             .cors().and()
             .csrf().disable()
             .authorizeHttpRequests()
-                .requestMatchers("/auth/**").permitAll()
-                .requestMatchers("/api/auth/**").permitAll()
-                .requestMatchers("/api/news/**").permitAll()
-                .requestMatchers("/api/seed/**").permitAll()
-                .requestMatchers("/swagger-ui/**", "/v3/api-docs/**").permitAll()
+                .requestMatchers(PublicEndpoints.PERMIT_ALL).permitAll()
+                // Завершение потоковых ответов: исходный запрос уже прошёл проверку
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 .anyRequest().authenticated()
             .and()
             .sessionManagement()
@@ -54,9 +60,23 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    // Новые хеши - {bcrypt} со стоимостью, подобранной под целевое время.
+    // Старые хеши без префикса проверяются BCrypt и перехешируются при входе.
     @Bean
-    public static BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public static PasswordEncoder passwordEncoder(
+            @Value("${security.password.bcrypt-strength:0}") int fixedStrength,
+            @Value("${security.password.target-ms:100}") long targetMillis,
+            @Value("${security.password.min-strength:10}") int minStrength,
+            @Value("${security.password.max-strength:16}") int maxStrength) {
+        int strength = fixedStrength > 0
+                ? fixedStrength
+                : BCryptStrengthCalibrator.calibrate(targetMillis, minStrength, maxStrength);
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(strength));
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", encoders);
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
     }
 
     @Bean
@@ -78,7 +98,7 @@ public class SecurityConfig {
             "Access-Control-Request-Method",
             "Access-Control-Request-Headers"
         ));
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "X-Refresh-Token"));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
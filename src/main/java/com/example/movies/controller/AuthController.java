@@ -1,14 +1,25 @@
 package com.example.movies.controller;
 
+import com.example.movies.exception.DuplicateUserException;
+import com.example.movies.exception.PasswordHashingRejectedException;
 import com.example.movies.model.Role;
 import com.example.movies.model.User;
 import com.example.movies.repository.RoleRepository;
 import com.example.movies.repository.UserRepository;
 import com.example.movies.security.JwtUtils;
+import com.example.movies.security.LoginThrottle;
+import com.example.movies.service.CustomUserDetailsService;
+import com.example.movies.service.PasswordHashingService;
+import com.example.movies.service.RefreshTokenService;
+import com.example.movies.service.RegistrationService;
+import com.example.movies.service.TokenRevocationService;
+import com.example.movies.service.UserActivityService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +34,8 @@ public class AuthController {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
+    static final String REFRESH_TOKEN_HEADER = "X-Refresh-Token";
+
     @Autowired
     private UserRepository userRepository;
 
@@ -30,75 +43,133 @@ public class AuthController {
     private RoleRepository roleRepository;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
 
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private UserActivityService userActivityService;
+
     @Operation(summary = "Регистрация нового пользователя", description = "Создание нового пользователя с ролью STUDENT")
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody RegisterRequest registerRequest) {
         logger.info("Attempting to register new user: {}", registerRequest.getUsername());
-        
-        if (userRepository.existsByUsername(registerRequest.getUsername())) {
-            logger.warn("Registration failed: username {} already exists", registerRequest.getUsername());
-            return ResponseEntity.badRequest().body("Username is already taken!");
-        }
 
-        if (userRepository.existsByEmail(registerRequest.getEmail())) {
-            logger.warn("Registration failed: email {} already exists", registerRequest.getEmail());
-            return ResponseEntity.badRequest().body("Email is already in use!");
-        }
-
-        // Создаем нового пользователя
-        User user = new User(
-            registerRequest.getUsername(),
-            registerRequest.getEmail(),
-            passwordEncoder.encode(registerRequest.getPassword()),
-            registerRequest.getFirstName(),
-            registerRequest.getLastName()
-        );
+        try {
+            registrationService.checkAvailable(registerRequest.getUsername(), registerRequest.getEmail());
+
+            // Создаем нового пользователя
+            User user = new User(
+                registerRequest.getUsername(),
+                registerRequest.getEmail(),
+                passwordHashingService.encode(registerRequest.getPassword()),
+                registerRequest.getFirstName(),
+                registerRequest.getLastName()
+            );
 
-        userRepository.save(user);
+            registrationService.create(user);
+        } catch (DuplicateUserException e) {
+            logger.warn("Registration failed for {}: {}", registerRequest.getUsername(), e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
         logger.info("User {} successfully registered", registerRequest.getUsername());
         
         return ResponseEntity.ok("User registered successfully!");
     }
 
-    @Operation(summary = "User Login", description = "Authenticates user and returns JWT. Доступен для: все")
+    @Operation(summary = "User Login", description = "Authenticates user and returns JWT. " +
+            "Если передан deviceId, в заголовке X-Refresh-Token возвращается refresh-токен. Доступен для: все")
     @PostMapping("/login")
-    public String login(@RequestParam String username,
-                        @RequestParam String password) {
+    public ResponseEntity<String> login(@RequestParam String username,
+                                        @RequestParam String password,
+                                        @RequestParam(required = false) String deviceId,
+                                        HttpServletRequest request) {
         logger.info("Attempting login for user: {}", username);
+        long retryAfter = loginThrottle.tryAcquire(username, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            logger.warn("Login for {} from {} throttled", username, request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body("Too many login attempts, please retry later");
+        }
         try {
             User user = userRepository.findByUsername(username);
             if (user == null) {
-                return "Неверные данные (user not found)";
+                return ResponseEntity.ok("Неверные данные (user not found)");
             }
 
-            if (!passwordEncoder.matches(password, user.getPassword())) {
-                return "Неверный пароль";
+            if (!passwordHashingService.matches(password, user.getPassword())) {
+                return ResponseEntity.ok("Неверный пароль");
             }
 
+            rehashIfNeeded(user, password);
+
             // Генерируем JWT
-            String token = jwtUtils.generateToken(user.getUsername());
+            String token = jwtUtils.generateToken(user);
             logger.info("User {} logged in successfully", username);
-            return token;
+            userActivityService.recordLogin(user.getId());
+            if (deviceId != null && !deviceId.isBlank()) {
+                return ResponseEntity.ok()
+                        .header(REFRESH_TOKEN_HEADER, refreshTokenService.issue(user, deviceId))
+                        .body(token);
+            }
+            return ResponseEntity.ok(token);
+        } catch(PasswordHashingRejectedException e) {
+            throw e;
         } catch(Exception e) {
             logger.error("Error during login for {}: {}", username, e.getMessage(), e);
-            return "Login failed: " + e.getMessage();
+            return ResponseEntity.ok("Login failed: " + e.getMessage());
         }
     }
 
+    @Operation(summary = "Refresh Token", description = "Обменивает refresh-токен на новый JWT без проверки пароля. " +
+            "Новый refresh-токен возвращается в заголовке X-Refresh-Token, старый становится недействительным. Доступен для: все")
+    @PostMapping("/refresh")
+    public ResponseEntity<String> refresh(@RequestParam String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        if (rotation == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid refresh token");
+        }
+        return ResponseEntity.ok()
+                .header(REFRESH_TOKEN_HEADER, rotation.refreshToken())
+                .body(jwtUtils.generateToken(rotation.user()));
+    }
+
+    @Operation(summary = "Logout", description = "Отзывает refresh-токен устройства и, если передан заголовок Authorization, " +
+            "текущий access-токен. Доступен для: все")
+    @PostMapping("/logout")
+    public ResponseEntity<String> logout(@RequestParam String refreshToken,
+                                         @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        refreshTokenService.revoke(refreshToken);
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            tokenRevocationService.revoke(authorization.substring(7));
+        }
+        return ResponseEntity.ok("Logged out");
+    }
+
     @Operation(summary = "Admin Registration", description = "Registers a new admin. Доступен для: все (использовать только при инициализации)")
     @PostMapping("/register-admin")
     public ResponseEntity<?> registerAdmin(@RequestBody AdminRegisterRequest adminRequest) {
         logger.info("Attempting to register admin: {}", adminRequest.getUsername());
         try {
             // Проверка на существование пользователя
-            if (userRepository.existsByUsername(adminRequest.getUsername())) {
-                return ResponseEntity.badRequest().body("Username is already taken!");
-            }
+            registrationService.checkAvailable(adminRequest.getUsername(), adminRequest.getEmail());
             
             // Получаем или создаём роль ROLE_ADMIN
             Role adminRole = roleRepository.findByName("ROLE_ADMIN");
@@ -111,7 +182,7 @@ public class AuthController {
             User newUser = new User(
                 adminRequest.getUsername(),
                 adminRequest.getEmail(),
-                passwordEncoder.encode(adminRequest.getPassword()),
+                passwordHashingService.encode(adminRequest.getPassword()),
                 adminRequest.getFirstName(),
                 adminRequest.getLastName()
             );
@@ -119,16 +190,45 @@ public class AuthController {
             Set<Role> roles = new HashSet<>();
             roles.add(adminRole);
             newUser.setRoles(roles);
-            userRepository.save(newUser);
+            registrationService.create(newUser);
+            userDetailsService.evict(newUser.getUsername());
 
             logger.info("Admin {} registered successfully", adminRequest.getUsername());
-            String token = jwtUtils.generateToken(newUser.getUsername());
+            String token = jwtUtils.generateToken(newUser);
             return ResponseEntity.ok(token);
+        } catch(DuplicateUserException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch(PasswordHashingRejectedException e) {
+            throw e;
         } catch(Exception e) {
             logger.error("Error during admin registration for {}: {}", adminRequest.getUsername(), e.getMessage(), e);
             return ResponseEntity.badRequest().body("Admin registration failed: " + e.getMessage());
         }
     }
+
+    // Прозрачно обновляем хеш до текущего алгоритма и стоимости после успешной проверки
+    private void rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHashingService.needsRehash(user.getPassword())) {
+            return;
+        }
+        try {
+            user.setPassword(passwordHashingService.encode(rawPassword));
+            userRepository.save(user);
+            userDetailsService.evict(user.getUsername());
+            logger.info("Password hash of user {} upgraded", user.getUsername());
+        } catch (Exception e) {
+            logger.warn("Failed to upgrade password hash of user {}: {}", user.getUsername(), e.getMessage());
+        }
+    }
+
+    // Пул хеширования перегружен: просим клиента повторить позже
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<String> handleHashingRejected(PasswordHashingRejectedException e) {
+        logger.warn("Auth request rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body("Server is busy, please retry later");
+    }
 }
 
 class RegisterRequest {
@@ -1,19 +1,25 @@
 package com.example.movies.controller;
 
 import com.example.movies.dto.CourseDTO;
+import com.example.movies.dto.RosterUpdateDTO;
 import com.example.movies.exception.ResourceNotFoundException;
 import com.example.movies.mapper.CourseMapper;
 import com.example.movies.model.Course;
 import com.example.movies.model.User;
+import com.example.movies.security.RoleRegistry;
+import com.example.movies.service.AuthorizationService;
+import com.example.movies.service.CourseRosterService;
 import com.example.movies.service.CourseService;
 import com.example.movies.service.NotificationService;
 import com.example.movies.service.UserService;
+import com.example.movies.util.CountMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -43,6 +49,12 @@ public class CourseController {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private CourseRosterService courseRosterService;
+
+    @Autowired
+    private AuthorizationService authorizationService;
+
     @GetMapping
     @Operation(summary = "Получить все курсы", description = "Возвращает список всех курсов")
     public ResponseEntity<List<CourseDTO>> getAllCourses() {
@@ -53,6 +65,65 @@ public class CourseController {
         return ResponseEntity.ok(courseDTOs);
     }
 
+    @GetMapping("/page")
+    @Operation(summary = "Курсы постранично", description = "Фильтры по названию, описанию и логину преподавателя. " +
+            "count=exact (по умолчанию) - точное число курсов, count=none - без подсчёта, count=approx - оценка")
+    public ResponseEntity<?> getCoursesPage(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String description,
+            @RequestParam(required = false) String teacherName,
+            @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "exact, none или approx") @RequestParam(required = false) String count) {
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Slice<Course> courses = courseService.findCourses(title, description, teacherName,
+                Math.max(0, page), Math.max(1, Math.min(size, 100)), countMode);
+        return ResponseEntity.ok(courses.map(courseMapper::toDTO));
+    }
+
+    @GetMapping("/catalog")
+    @Operation(summary = "Каталог курсов", description = "Постраничный каталог: id преподавателя и число студентов " +
+            "вместо списка их id (полный список - GET /api/courses/{id}). Фильтры как у /page, count=exact, none или approx")
+    public ResponseEntity<?> getCatalog(
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String description,
+            @RequestParam(required = false) String teacherName,
+            @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "exact, none или approx") @RequestParam(required = false) String count) {
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(courseService.findCatalog(title, description, teacherName,
+                Math.max(0, page), Math.max(1, Math.min(size, 100)), countMode));
+    }
+
+    @GetMapping("/search")
+    @Operation(summary = "Поиск курсов", description = "q - полнотекстовый поиск по названию и описанию " +
+            "(русская морфология, синтаксис как в веб-поиске: \"фраза\", or, -слово), teacherName - часть имени " +
+            "или логина преподавателя. sort: relevance (по умолчанию), title, -title, newest, oldest. Без общего числа")
+    public ResponseEntity<?> searchCourses(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String teacherName,
+            @Parameter(description = "relevance, title, -title, newest или oldest") @RequestParam(defaultValue = "relevance") String sort,
+            @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(courseService.searchCourses(q, teacherName, sort,
+                    Math.max(0, page), Math.max(1, Math.min(size, 100))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @GetMapping("/{id}")
     @Operation(summary = "Получить курс по ID", description = "Возвращает курс с указанным ID")
     public ResponseEntity<CourseDTO> getCourseById(@PathVariable Long id) {
@@ -109,8 +180,8 @@ public class CourseController {
             }
             logger.info("Found course: {}", course.getTitle());
             
-            if (!currentUser.getRoles().stream().anyMatch(r -> r.getName().equals("ROLE_ADMIN")) &&
-                !course.getTeacher().getId().equals(currentUser.getId())) {
+            if (!authorizationService.currentUserHasRole(RoleRegistry.ADMIN) &&
+                (course.getTeacher() == null || !course.getTeacher().getId().equals(currentUser.getId()))) {
                 logger.error("User {} is not authorized to enroll students in course {}", 
                            currentUser.getUsername(), courseId);
                 return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -118,14 +189,22 @@ public class CourseController {
             }
 
             // Enroll student
-            courseService.enrollStudent(courseId, studentId);
+            CourseService.EnrollmentResult result = courseService.enrollStudent(courseId, studentId);
+            if (result.status() == CourseService.EnrollmentStatus.WAITLISTED) {
+                notificationService.notifyUsers(
+                    List.of(studentId),
+                    "Лист ожидания",
+                    String.format("Курс \"%s\" заполнен, вы %d-й в очереди", course.getTitle(), result.waitlistPosition())
+                );
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(Map.of("message", "Course is full, student added to waitlist",
+                                     "position", result.waitlistPosition()));
+            }
             logger.info("Successfully enrolled student {} to course {}", studentId, courseId);
             
             // Send notification
-            User student = userService.getUserById(studentId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Student not found"));
-            notificationService.createNotification(
-                student,
+            notificationService.notifyUsers(
+                List.of(studentId),
                 "Зачисление на курс",
                 String.format("Вы были зачислены на курс \"%s\"", course.getTitle())
             );
@@ -135,6 +214,9 @@ public class CourseController {
             logger.error("Resource not found: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            // Уже записан или не студент
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Error enrolling student: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -146,11 +228,48 @@ public class CourseController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Отчислить студента с курса", 
                description = "Отчисляет студента с курса. Доступно только для администраторов")
-    public ResponseEntity<CourseDTO> removeStudentFromCourse(
+    public ResponseEntity<?> removeStudentFromCourse(
             @Parameter(description = "ID курса") @PathVariable Long courseId,
             @Parameter(description = "ID студента") @PathVariable Long studentId) {
-        Course course = courseService.removeStudentFromCourse(courseId, studentId);
-        return ResponseEntity.ok(courseMapper.toDTO(course));
+        CourseService.RemovalResult result = courseService.removeStudentFromCourse(courseId, studentId);
+        if (!result.removed()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Student is not enrolled in this course"));
+        }
+        // Студенты, получившие освободившееся место из очереди
+        if (!result.promoted().isEmpty()) {
+            Course course = courseService.getCourseById(courseId);
+            notificationService.notifyUsers(
+                result.promoted(),
+                "Зачисление на курс",
+                String.format("Освободилось место: вы зачислены на курс \"%s\"", course.getTitle())
+            );
+        }
+        return ResponseEntity.ok(Map.of("message", "Student removed from course", "promoted", result.promoted()));
+    }
+
+    @PostMapping("/{courseId}/roster")
+    @Operation(summary = "Изменить состав курса",
+               description = "Добавляет (ADD), отчисляет (REMOVE) или заменяет (REPLACE) список студентов курса " +
+                             "одной операцией. Доступно для: ADMIN, TEACHER (только для своих курсов)")
+    @PreAuthorize("hasAnyRole('ADMIN','TEACHER')")
+    public ResponseEntity<?> updateRoster(
+            @Parameter(description = "ID курса") @PathVariable Long courseId,
+            @RequestBody RosterUpdateDTO request) {
+        try {
+            if (!authorizationService.currentUserHasRole(RoleRegistry.ADMIN) &&
+                !courseService.isTeacherOf(courseId, authorizationService.currentUserId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(Map.of("error", "Only course teacher or admin can change the roster"));
+            }
+            CourseRosterService.RosterMode mode = courseRosterService.parseMode(request.getMode());
+            return ResponseEntity.ok(courseRosterService.updateRoster(courseId, mode, request.getStudentIds()));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PostMapping("/{courseId}/teacher/{teacherId}")
@@ -4,6 +4,8 @@ import com.example.movies.model.Event;
 import com.example.movies.model.User;
 import com.example.movies.repository.EventRepository;
 import com.example.movies.repository.UserRepository;
+import com.example.movies.security.RoleRegistry;
+import com.example.movies.service.AuthorizationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -36,6 +38,9 @@ public class EventsController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AuthorizationService authorizationService;
+
     @Operation(
         summary = "Получить все события",
         description = "Возвращает список всех событий. Доступно для аутентифицированных пользователей"
@@ -103,7 +108,7 @@ public class EventsController {
         String username = authentication.getName();
         User teacher = userRepository.findByUsername(username);
         
-        if (teacher == null || !teacher.getRoles().stream().anyMatch(role -> role.getName().equals("ROLE_TEACHER"))) {
+        if (teacher == null || !authorizationService.hasRole(authentication, RoleRegistry.TEACHER)) {
             return ResponseEntity.badRequest().build();
         }
 
@@ -6,15 +6,18 @@ import com.example.movies.model.News;
 import com.example.movies.model.User;
 import com.example.movies.service.NewsService;
 import com.example.movies.service.UserService;
+import com.example.movies.util.CountMode;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -43,6 +46,25 @@ public class NewsController {
         return ResponseEntity.ok(newsDTOs);
     }
 
+    @Operation(summary = "Новости постранично", description = "Свежие первыми. title - точное название, likeTitle - подстрока. " +
+            "count=exact (по умолчанию) - точное число новостей, count=none - без подсчёта, count=approx - оценка")
+    @GetMapping("/page")
+    public ResponseEntity<?> getNewsPage(@RequestParam(required = false) String title,
+                                         @RequestParam(required = false) String likeTitle,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "10") int size,
+                                         @RequestParam(required = false) String count) {
+        CountMode countMode;
+        try {
+            countMode = CountMode.parse(count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Slice<News> news = newsService.findNews(title, likeTitle,
+                Math.max(0, page), Math.max(1, Math.min(size, 100)), countMode);
+        return ResponseEntity.ok(news.map(newsMapper::toDTO));
+    }
+
     @Operation(summary = "Получить новость по ID")
     @GetMapping("/{id}")
     public ResponseEntity<NewsDTO> getNewsById(@PathVariable Long id) {
@@ -2,16 +2,29 @@ package com.example.movies.controller;
 
 import com.example.movies.model.Role;
 import com.example.movies.model.User;
+import com.example.movies.model.UserDeletionJob;
 import com.example.movies.repository.RoleRepository;
 import com.example.movies.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Map;
@@ -26,10 +39,18 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.web.bind.annotation.RequestParam;
 import io.swagger.v3.oas.annotations.Parameter;
+import com.example.movies.dto.RoleStatsDTO;
 import com.example.movies.dto.UserDTO;
-import com.example.movies.mapper.UserMapper;
+import com.example.movies.service.CustomUserDetailsService;
+import com.example.movies.service.RegistrationService;
+import com.example.movies.service.RoleStatisticsService;
+import com.example.movies.service.TokenRevocationService;
+import com.example.movies.service.UserDeletionService;
+import com.example.movies.service.UserExportService;
+import com.example.movies.service.UserImportService;
 import com.example.movies.service.UserService;
 import com.example.movies.exception.ResourceNotFoundException;
+import com.example.movies.util.CountMode;
 
 @RestController
 @RequestMapping("/users")
@@ -44,24 +65,48 @@ public class UserController {
     private RoleRepository roleRepository;
 
     @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private PasswordEncoder passwordEncoder;
 
     @Autowired
-    private UserMapper userMapper;
+    private UserService userService;
 
     @Autowired
-    private UserService userService;
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private RoleStatisticsService roleStatisticsService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserDeletionService userDeletionService;
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
 
     // Просмотр списка пользователей доступен ADMIN и TEACHER
     @Operation(summary = "Get All Users", description = "Returns all users. Доступен для: ADMIN, TEACHER")
     @PreAuthorize("hasAnyRole('ADMIN','TEACHER')")
     @GetMapping
-    public ResponseEntity<Page<UserDTO>> getAllUsers(
+    public ResponseEntity<?> getAllUsers(
             @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
-            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size) {
-        Page<User> users = userService.findAll(page, size);
-        Page<UserDTO> userDTOs = users.map(userMapper::toDTO);
-        return ResponseEntity.ok(userDTOs);
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size,
+            @Parameter(description = "exact (по умолчанию), none - без подсчёта, approx - оценка") @RequestParam(required = false) String count) {
+        try {
+            return ResponseEntity.ok(userService.findAllDTOs(page, size, CountMode.parse(count)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     // Получение данных конкретного пользователя, доступно ADMIN и TEACHER
@@ -90,9 +135,7 @@ public class UserController {
     public User createUser(@RequestBody User user) {
         logger.info("Creating user: {}", user.getUsername());
         try {
-            if(userRepository.findByUsername(user.getUsername()) != null) {
-                throw new RuntimeException("Пользователь с таким именем уже существует!");
-            }
+            registrationService.checkAvailable(user.getUsername(), user.getEmail());
             user.setPassword(passwordEncoder.encode(user.getPassword()));
             // По умолчанию назначаем роль ROLE_USER
             Role userRole = roleRepository.findByName("ROLE_USER");
@@ -103,13 +146,56 @@ public class UserController {
             Set<Role> roles = new HashSet<>();
             roles.add(userRole);
             user.setRoles(roles);
-            return userRepository.save(user);
+            User saved = registrationService.create(user);
+            userDetailsService.evict(saved.getUsername());
+            return saved;
         } catch(Exception e) {
             logger.error("Error creating user {}: {}", user.getUsername(), e.getMessage(), e);
             throw e;
         }
     }
 
+    // Массовый импорт пользователей из CSV или NDJSON; тело читается потоком, без буферизации
+    @Operation(summary = "Import Users", description = "Creates users from a streamed text/csv upload " +
+            "(header: username,email,password,firstName,lastName[,role]) or application/x-ndjson upload. " +
+            "Returns counts and per-row errors. Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> importUsers(HttpServletRequest request) throws IOException {
+        UserImportService.Format format = MediaType.parseMediaType(request.getContentType())
+                .isCompatibleWith(TEXT_CSV) ? UserImportService.Format.CSV : UserImportService.Format.NDJSON;
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        logger.info("Importing users from {} upload", format);
+        try {
+            return ResponseEntity.ok(userImportService.importUsers(
+                    new InputStreamReader(request.getInputStream(), charset), format));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Потоковая выгрузка всех пользователей с ролями в CSV или NDJSON
+    @Operation(summary = "Export Users", description = "Streams all users with their roles as CSV (format=csv) " +
+            "or NDJSON (format=ndjson). Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportUsers(@RequestParam(defaultValue = "csv") String format) {
+        UserExportService.Format exportFormat;
+        try {
+            exportFormat = UserExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unsupported user export format: {}", format);
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> userExportService.export(out, exportFormat);
+        return ResponseEntity.ok()
+                .contentType(exportFormat == UserExportService.Format.CSV ? TEXT_CSV : APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"users." + format.toLowerCase(Locale.ROOT) + "\"")
+                .body(body);
+    }
+
     // Обновление данных пользователя, доступно только для ADMIN
     @Operation(summary = "Update User", description = "Updates user data. Доступен для: ADMIN")
     @PreAuthorize("hasRole('ADMIN')")
@@ -120,11 +206,16 @@ public class UserController {
             Optional<User> optionalUser = userRepository.findById(id);
             if(optionalUser.isPresent()){
                 User user = optionalUser.get();
+                userDetailsService.evict(user.getUsername());
                 user.setUsername(userDetails.getUsername());
                 if(userDetails.getPassword() != null && !userDetails.getPassword().isEmpty()){
                     user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
                 }
-                return ResponseEntity.ok(userRepository.save(user));
+                // Старые токены с прежним именем/паролем больше не принимаются. Сохранение и отзыв
+                // в одной транзакции: если сохранение не пройдёт, версия токенов не изменится
+                tokenRevocationService.revokeAll(user);
+                registrationService.remember(user.getUsername(), user.getEmail());
+                return ResponseEntity.ok(user);
             }
             logger.warn("User id {} not found for update", id);
             return ResponseEntity.notFound().build();
@@ -134,17 +225,19 @@ public class UserController {
         }
     }
 
-    // Удаление пользователя, доступно только для ADMIN
-    @Operation(summary = "Delete User", description = "Deletes a user. Доступен для: ADMIN")
+    // Удаление пользователя, доступно только для ADMIN. Пользователь сразу скрывается и теряет
+    // токены, связанные записи чистятся в фоне; ответ 202 с заданием для отслеживания прогресса
+    @Operation(summary = "Delete User", description = "Soft-deletes a user and queues cleanup of related rows. Доступен для: ADMIN")
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteUser(@PathVariable Long id) {
         logger.info("Deleting user with id: {}", id);
         try {
-            Optional<User> optionalUser = userRepository.findById(id);
-            if(optionalUser.isPresent()){
-                userRepository.delete(optionalUser.get());
-                return ResponseEntity.ok().build();
+            Optional<UserDeletionJob> job = userDeletionService.requestDeletion(id);
+            if (job.isPresent()) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(HttpHeaders.LOCATION, "/users/deletions/" + job.get().getId())
+                        .body(job.get());
             }
             logger.warn("User id {} not found for deletion", id);
             return ResponseEntity.notFound().build();
@@ -154,31 +247,142 @@ public class UserController {
         }
     }
 
+    // Состояние задания на удаление пользователя
+    @Operation(summary = "Get Deletion Job", description = "Returns status and progress of a user deletion job. Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/deletions/{jobId}")
+    public ResponseEntity<UserDeletionJob> getDeletionJob(@PathVariable Long jobId) {
+        return userDeletionService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Повтор упавшего задания на удаление, в том числе исчерпавшего автоматические попытки
+    @Operation(summary = "Retry Deletion Job", description = "Schedules a failed user deletion job to run again. Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/deletions/{jobId}/retry")
+    public ResponseEntity<?> retryDeletionJob(@PathVariable Long jobId) {
+        if (userDeletionService.getJob(jobId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return userDeletionService.retry(jobId)
+                .<ResponseEntity<?>>map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElse(ResponseEntity.badRequest().body(Map.of("error", "Only failed jobs can be retried")));
+    }
+
+    // Выход на всех устройствах для текущего пользователя
+    @Operation(summary = "Logout Everywhere", description = "Revokes all access and refresh tokens of the current user. Доступен для: авторизованных")
+    @PostMapping("/me/logout-all")
+    public ResponseEntity<?> logoutAll() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        User user = authentication != null ? userRepository.findByUsername(authentication.getName()) : null;
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Not authenticated"));
+        }
+        tokenRevocationService.revokeAll(user);
+        return ResponseEntity.ok(Map.of("message", "All sessions revoked"));
+    }
+
+    // Принудительный отзыв всех токенов пользователя, доступно только для ADMIN
+    @Operation(summary = "Revoke User Tokens", description = "Revokes all access and refresh tokens of a user. Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/{id}/revoke-tokens")
+    public ResponseEntity<?> revokeTokens(@PathVariable Long id) {
+        Optional<User> optionalUser = userRepository.findById(id);
+        if (optionalUser.isEmpty()) {
+            logger.warn("User id {} not found for token revocation", id);
+            return ResponseEntity.notFound().build();
+        }
+        tokenRevocationService.revokeAll(optionalUser.get());
+        return ResponseEntity.ok(Map.of("message", "Tokens revoked"));
+    }
+
     // New endpoint: получение студентов (ROLE_USER) с пагинацией и сортировкой
     @GetMapping("/students")
     @Operation(summary = "Получить всех студентов", description = "Возвращает список всех студентов с пагинацией")
-    public ResponseEntity<Page<UserDTO>> getStudents(
+    public ResponseEntity<?> getStudents(
+            @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Фильтр по имени пользователя") @RequestParam(required = false) String nameLike,
+            @Parameter(description = "exact (по умолчанию), none - без подсчёта, approx - оценка") @RequestParam(required = false) String count) {
+        try {
+            return ResponseEntity.ok(userService.findStudentDTOs(page, nameLike, CountMode.parse(count)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // Курсорная пагинация: глубокие страницы стоят столько же, сколько первая
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAnyRole('ADMIN','TEACHER')")
+    @Operation(summary = "Get Users By Cursor", description = "Keyset pagination by username. Pass nextCursor of the previous page as after. Доступен для: ADMIN, TEACHER")
+    public ResponseEntity<?> getUsersByCursor(
+            @Parameter(description = "Курсор nextCursor предыдущей страницы") @RequestParam(required = false) String after,
+            @Parameter(description = "Размер страницы (1..100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Посчитать общее число пользователей") @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            return ResponseEntity.ok(userService.findAllAfter(after, clampPageSize(size), withTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+    }
+
+    @GetMapping("/students/cursor")
+    @Operation(summary = "Получить студентов по курсору", description = "Keyset-пагинация студентов по имени пользователя")
+    public ResponseEntity<?> getStudentsByCursor(
+            @Parameter(description = "Курсор nextCursor предыдущей страницы") @RequestParam(required = false) String after,
+            @Parameter(description = "Размер страницы (1..100)") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Фильтр по имени пользователя") @RequestParam(required = false) String nameLike,
+            @Parameter(description = "Посчитать общее число студентов") @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            return ResponseEntity.ok(userService.findStudentsAfter(after, clampPageSize(size), nameLike, withTotal));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+    }
+
+    // Нечёткий поиск с опечатками по логину, имени, фамилии и email
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('ADMIN','TEACHER')")
+    @Operation(summary = "Search Users", description = "Fuzzy trigram search over username, first/last name and email, ranked by similarity. " +
+            "Only the first search.users.max-candidates matches are ranked; truncated=true means more matches exist " +
+            "and the order is best-effort. Доступен для: ADMIN, TEACHER")
+    public ResponseEntity<?> searchUsers(
+            @Parameter(description = "Строка поиска (не короче 2 символов)") @RequestParam String q,
+            @Parameter(description = "Фильтр по роли, например STUDENT") @RequestParam(required = false) String role,
             @Parameter(description = "Номер страницы (0..N)") @RequestParam(defaultValue = "0") int page,
-            @Parameter(description = "Фильтр по имени пользователя") @RequestParam(required = false) String nameLike) {
-        Page<User> students = userService.findStudents(page, nameLike);
-        Page<UserDTO> studentDTOs = students.map(userMapper::toDTO);
-        return ResponseEntity.ok(studentDTOs);
+            @Parameter(description = "Размер страницы (1..100)") @RequestParam(defaultValue = "20") int size) {
+        String query = q.trim();
+        if (query.length() < 2) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Query must be at least 2 characters"));
+        }
+        return ResponseEntity.ok(userService.search(query, role, Math.max(page, 0), clampPageSize(size)));
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, 100));
     }
 
     @GetMapping("/debug/roles")
     @Operation(summary = "Debug: List all roles", description = "Lists all available roles in the system")
     public ResponseEntity<List<Map<String, String>>> listAllRoles() {
-        List<Role> roles = roleRepository.findAll();
-        List<Map<String, String>> roleInfo = roles.stream()
-            .map(role -> Map.of(
-                "id", role.getId().toString(),
-                "name", role.getName(),
-                "users", String.valueOf(role.getUsers().size())
+        List<Map<String, String>> roleInfo = roleStatisticsService.getStatistics(0).stream()
+            .map(stats -> Map.of(
+                "id", stats.getId().toString(),
+                "name", stats.getName(),
+                "users", String.valueOf(stats.getUsers())
             ))
             .collect(Collectors.toList());
         return ResponseEntity.ok(roleInfo);
     }
 
+    // Статистика по ролям: число пользователей и новые пользователи по неделям
+    @Operation(summary = "Role statistics", description = "Returns user counts per role and new users per week for the last N weeks. Доступен для: ADMIN")
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/roles/stats")
+    public ResponseEntity<List<RoleStatsDTO>> getRoleStatistics(@RequestParam(defaultValue = "12") int weeks) {
+        return ResponseEntity.ok(roleStatisticsService.getStatistics(Math.max(1, Math.min(weeks, 52))));
+    }
+
     @GetMapping("/debug/user/{id}/roles")
     @Operation(summary = "Debug: Get user roles", description = "Lists all roles for a specific user")
     public ResponseEntity<Map<String, Object>> getUserRoles(@PathVariable Long id) {
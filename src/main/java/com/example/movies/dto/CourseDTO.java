@@ -30,6 +30,8 @@ public class CourseDTO {
     private String title;
     private String description;
     private Long teacherId;
+    private Integer capacity;
+    private int enrolledCount;
     private Set<Long> studentIds;
 
     // Getters and Setters
@@ -65,6 +67,22 @@ public class CourseDTO {
         this.teacherId = teacherId;
     }
 
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getEnrolledCount() {
+        return enrolledCount;
+    }
+
+    public void setEnrolledCount(int enrolledCount) {
+        this.enrolledCount = enrolledCount;
+    }
+
     public Set<Long> getStudentIds() {
         return studentIds;
     }
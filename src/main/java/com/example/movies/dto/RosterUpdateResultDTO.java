@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Итог изменения состава курса. invalid - id, которые не принадлежат действующим студентам
+public class RosterUpdateResultDTO {
+    private List<Long> added = new ArrayList<>();
+    private List<Long> removed = new ArrayList<>();
+    private List<Long> waitlisted = new ArrayList<>();
+    private List<Long> promoted = new ArrayList<>();
+    private List<Long> invalid = new ArrayList<>();
+
+    public List<Long> getAdded() {
+        return added;
+    }
+
+    public void setAdded(List<Long> added) {
+        this.added = added;
+    }
+
+    public List<Long> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<Long> removed) {
+        this.removed = removed;
+    }
+
+    public List<Long> getWaitlisted() {
+        return waitlisted;
+    }
+
+    public void setWaitlisted(List<Long> waitlisted) {
+        this.waitlisted = waitlisted;
+    }
+
+    public List<Long> getPromoted() {
+        return promoted;
+    }
+
+    public void setPromoted(List<Long> promoted) {
+        this.promoted = promoted;
+    }
+
+    public List<Long> getInvalid() {
+        return invalid;
+    }
+
+    public void setInvalid(List<Long> invalid) {
+        this.invalid = invalid;
+    }
+}
@@ -43,6 +43,16 @@ public class UserDTO {
     
     private Set<String> roles;
 
+    public UserDTO() {
+    }
+
+    // Для JPQL-проекции в списках пользователей; роли подгружаются отдельным запросом на страницу
+    public UserDTO(Long id, String username, String email) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -39,6 +39,8 @@ public class CourseMapper {
         dto.setId(course.getId());
         dto.setTitle(course.getTitle());
         dto.setDescription(course.getDescription());
+        dto.setCapacity(course.getCapacity());
+        dto.setEnrolledCount(course.getEnrolledCount());
         
         if (course.getTeacher() != null) {
             dto.setTeacherId(course.getTeacher().getId());
@@ -59,6 +61,7 @@ public class CourseMapper {
         course.setId(dto.getId());
         course.setTitle(dto.getTitle());
         course.setDescription(dto.getDescription());
+        course.setCapacity(dto.getCapacity());
         return course;
     }
 } 
\ No newline at end of file
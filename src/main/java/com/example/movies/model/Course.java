@@ -29,7 +29,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "courses")
+@Table(name = "courses", indexes = {
+    @Index(name = "idx_courses_teacher_id", columnList = "teacher_id"),
+    @Index(name = "idx_courses_title_id", columnList = "title, id")
+})
 public class Course {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -45,11 +48,21 @@ public class Course {
     @JoinColumn(name = "teacher_id")
     private User teacher;
 
+    // Предельное число студентов; null - без ограничения
+    private Integer capacity;
+
+    // Занятые места. Меняется только условным UPDATE в CourseRepository (claimSeat/releaseSeat),
+    // JPA его не записывает, чтобы сохранение курса не затёрло счётчик устаревшим значением
+    @Column(name = "enrolled_count", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "integer default 0")
+    private int enrolledCount;
+
     @ManyToMany
     @JoinTable(
         name = "course_students",
         joinColumns = @JoinColumn(name = "course_id"),
-        inverseJoinColumns = @JoinColumn(name = "student_id")
+        inverseJoinColumns = @JoinColumn(name = "student_id"),
+        indexes = @Index(name = "idx_course_students_student", columnList = "student_id")
     )
     @JsonIgnore
     private Set<User> students = new HashSet<>();
@@ -87,6 +100,18 @@ public class Course {
         this.teacher = teacher;
     }
 
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getEnrolledCount() {
+        return enrolledCount;
+    }
+
     public Set<User> getStudents() {
         return students;
     }
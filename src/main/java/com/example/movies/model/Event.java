@@ -28,7 +28,7 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
-@Table(name = "events")
+@Table(name = "events", indexes = @Index(name = "idx_events_teacher_id", columnList = "teacher_id"))
 public class Event {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
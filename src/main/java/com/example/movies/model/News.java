@@ -29,7 +29,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
-@Table(name = "news")
+@Table(name = "news", indexes = @Index(name = "idx_news_author_id", columnList = "author_id"))
 public class News {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,23 +28,38 @@ import java.util.HashSet;
 import java.util.Set;
 import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SQLRestriction;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+    @UniqueConstraint(name = User.UK_USERNAME, columnNames = "username"),
+    @UniqueConstraint(name = User.UK_EMAIL, columnNames = "email")
+}, indexes = {
+    @Index(name = "idx_users_tokens_revoked_at", columnList = "tokens_revoked_at"),
+    @Index(name = "idx_users_username_id", columnList = "username, id"),
+    @Index(name = "idx_users_created_at", columnList = "created_at"),
+    @Index(name = "idx_users_last_seen_at", columnList = "last_seen_at")
+})
+// Помеченные на удаление пользователи не видны JPA-запросам; нативные запросы фильтруют deleted_at сами
+@SQLRestriction("deleted_at IS NULL")
 public class User {
-    
+
+    // Имена ограничений, по которым RegistrationService распознаёт занятые имя и email
+    public static final String UK_USERNAME = "uk_users_username";
+    public static final String UK_EMAIL = "uk_users_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String username;
 
     @Column(nullable = false)
     private String password;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String email;
 
     @Column(nullable = false)
@@ -61,7 +76,8 @@ public class User {
     @JoinTable(
         name = "users_roles",
         joinColumns = @JoinColumn(name = "user_id"),
-        inverseJoinColumns = @JoinColumn(name = "role_id"))
+        inverseJoinColumns = @JoinColumn(name = "role_id"),
+        indexes = @Index(name = "idx_users_roles_role_user", columnList = "role_id, user_id"))
     @JsonIgnore
     private Set<Role> roles = new HashSet<>();
 
@@ -78,6 +94,40 @@ public class User {
     @CreationTimestamp
     private LocalDateTime createdAt;
 
+    // Версия токенов: увеличивается при смене ролей/учётных данных,
+    // токены со старой версией перестают приниматься
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    @JsonIgnore
+    private int tokenVersion;
+
+    // Время последнего увеличения tokenVersion: по нему экземпляры приложения
+    // инкрементально подтягивают изменившиеся версии
+    @Column(name = "tokens_revoked_at")
+    @JsonIgnore
+    private LocalDateTime tokensRevokedAt;
+
+    // Время последнего входа и последнего запроса с токеном. Пишутся с задержкой
+    // пачками (UserActivityService), поэтому могут отставать на интервал сброса.
+    // Пишет их только UserBulkRepository.updateActivity: сохранение сущности не затирает
+    // более новое значение загруженным
+    @Column(name = "last_login_at", insertable = false, updatable = false)
+    private LocalDateTime lastLoginAt;
+
+    @Column(name = "last_seen_at", insertable = false, updatable = false)
+    private LocalDateTime lastSeenAt;
+
+    // Служебная учётная запись - владелец новостей и событий удалённых пользователей.
+    // Создаётся в db/init.sql, приложение флаг не меняет
+    @Column(name = "system_account", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "boolean default false")
+    @JsonIgnore
+    private boolean systemAccount;
+
+    // Время мягкого удаления: строку окончательно удаляет UserDeletionService
+    @Column(name = "deleted_at")
+    @JsonIgnore
+    private LocalDateTime deletedAt;
+
     public User() {
     }
 
@@ -176,4 +226,40 @@ public class User {
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
+    public LocalDateTime getTokensRevokedAt() {
+        return tokensRevokedAt;
+    }
+
+    public void setTokensRevokedAt(LocalDateTime tokensRevokedAt) {
+        this.tokensRevokedAt = tokensRevokedAt;
+    }
+
+    public LocalDateTime getLastLoginAt() {
+        return lastLoginAt;
+    }
+
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+
+    public boolean isSystemAccount() {
+        return systemAccount;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
 }
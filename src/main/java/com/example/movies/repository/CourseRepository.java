@@ -23,19 +23,82 @@
  */
 package com.example.movies.repository;
 
+import com.example.movies.dto.CourseSummaryDTO;
 import com.example.movies.model.Course;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 @Repository
 public interface CourseRepository extends JpaRepository<Course, Long> {
 
+    // Курсы без преподавателя попадают в каталог, пока не задан фильтр по преподавателю
+    String CATALOG_FILTERS =
+            "(:title IS NULL OR c.title = :title) AND " +
+            "(:description IS NULL OR c.description LIKE %:description%) AND " +
+            "(:teacherName IS NULL OR t.username LIKE %:teacherName%)";
+
+    // countQuery задан явно: выведенный Spring Data COUNT теряет параметры, повторённые в LIKE
+    @Query(value = "SELECT c FROM Course c WHERE " +
+                   "(:title IS NULL OR c.title = :title) AND " +
+                   "(:description IS NULL OR c.description LIKE %:description%) AND " +
+                   "(:teacherName IS NULL OR c.teacher.username LIKE %:teacherName%)",
+           countQuery = "SELECT COUNT(c) FROM Course c WHERE " +
+                        "(:title IS NULL OR c.title = :title) AND " +
+                        "(:description IS NULL OR c.description LIKE %:description%) AND " +
+                        "(:teacherName IS NULL OR c.teacher.username LIKE %:teacherName%)")
+    Page<Course> findByFilters(String title, String description, String teacherName, Pageable pageable);
+
+    // Без COUNT: size + 1 строк определяют hasNext
     @Query("SELECT c FROM Course c WHERE " +
            "(:title IS NULL OR c.title = :title) AND " +
            "(:description IS NULL OR c.description LIKE %:description%) AND " +
            "(:teacherName IS NULL OR c.teacher.username LIKE %:teacherName%)")
-    Page<Course> findByFilters(String title, String description, String teacherName, Pageable pageable);
+    Slice<Course> findByFiltersAsSlice(String title, String description, String teacherName, Pageable pageable);
+
+    // Каталог: одна выборка на страницу. Количество студентов - подзапрос SIZE по course_students
+    // для каждой строки страницы, преподаватель через LEFT JOIN, сами студенты не загружаются
+    @Query(value = "SELECT new com.example.movies.dto.CourseSummaryDTO(c.id, c.title, c.description, t.id, c.capacity, SIZE(c.students)) " +
+                   "FROM Course c LEFT JOIN c.teacher t WHERE " + CATALOG_FILTERS,
+           countQuery = "SELECT COUNT(c) FROM Course c LEFT JOIN c.teacher t WHERE " + CATALOG_FILTERS)
+    Page<CourseSummaryDTO> findSummaries(String title, String description, String teacherName, Pageable pageable);
+
+    @Query("SELECT new com.example.movies.dto.CourseSummaryDTO(c.id, c.title, c.description, t.id, c.capacity, SIZE(c.students)) " +
+           "FROM Course c LEFT JOIN c.teacher t WHERE " + CATALOG_FILTERS)
+    Slice<CourseSummaryDTO> findSummariesAsSlice(String title, String description, String teacherName, Pageable pageable);
+
+    // Запись и отчисление напрямую в таблице связи, без загрузки списка студентов.
+    // Возвращают число затронутых строк: 0 - студент уже записан / не был записан
+    boolean existsByIdAndTeacher_Id(Long id, Long teacherId);
+
+    @Modifying
+    @Query(value = "INSERT INTO course_students (course_id, student_id) VALUES (:courseId, :studentId) " +
+                   "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertEnrollment(Long courseId, Long studentId);
+
+    @Modifying
+    @Query(value = "DELETE FROM course_students WHERE course_id = :courseId AND student_id = :studentId",
+           nativeQuery = true)
+    int deleteEnrollment(Long courseId, Long studentId);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM course_students WHERE course_id = :courseId AND student_id = :studentId)",
+           nativeQuery = true)
+    boolean isEnrolled(Long courseId, Long studentId);
+
+    // Занимает место атомарным условным UPDATE: 0 - мест нет или курса нет. Блокируется только
+    // строка курса, параллельные записи на тот же курс выстраиваются на ней до конца транзакции,
+    // а условие перепроверяется после ожидания, поэтому лимит не превышается
+    @Modifying
+    @Query(value = "UPDATE courses SET enrolled_count = enrolled_count + 1 " +
+                   "WHERE id = :courseId AND (capacity IS NULL OR enrolled_count < capacity)", nativeQuery = true)
+    int claimSeat(Long courseId);
+
+    @Modifying
+    @Query(value = "UPDATE courses SET enrolled_count = enrolled_count - 1 WHERE id = :courseId AND enrolled_count > 0",
+           nativeQuery = true)
+    int releaseSeat(Long courseId);
 }
@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+// Массовое изменение состава курса в обход JPA: списки студентов передаются массивом,
+// поэтому на любое их число приходится по одному оператору. Вызывать внутри транзакции.
+@Repository
+public class CourseRosterRepository {
+
+    // Блокирует строку курса до конца транзакции: параллельные claimSeat ждут, счётчик не расходится
+    private static final String LOCK_COURSE =
+            "SELECT title, capacity, enrolled_count FROM courses WHERE id = ? FOR NO KEY UPDATE";
+
+    // Запрошенные id (без повторов, в порядке первого появления) против текущего состава курса.
+    // Студенты курса вне запроса нужны только для замены состава - последний параметр
+    private static final String SELECT_DIFF =
+            "SELECT COALESCE(r.id, s.student_id) AS id, r.id IS NOT NULL AS requested, " +
+            "s.student_id IS NOT NULL AS enrolled, " +
+            "EXISTS (SELECT 1 FROM users_roles ur JOIN roles ro ON ro.id = ur.role_id " +
+            "JOIN users u ON u.id = ur.user_id " +
+            "WHERE ur.user_id = COALESCE(r.id, s.student_id) AND ro.name = 'ROLE_STUDENT' " +
+            "AND u.deleted_at IS NULL) AS student, " +
+            "EXISTS (SELECT 1 FROM course_waitlist w WHERE w.course_id = ? " +
+            "AND w.student_id = COALESCE(r.id, s.student_id)) AS waitlisted " +
+            "FROM (SELECT t.id, min(t.ord) AS ord FROM unnest(?::bigint[]) WITH ORDINALITY AS t(id, ord) " +
+            "GROUP BY t.id) r " +
+            "FULL JOIN (SELECT student_id FROM course_students WHERE course_id = ?) s ON s.student_id = r.id " +
+            "WHERE r.id IS NOT NULL OR ? " +
+            "ORDER BY r.ord NULLS LAST";
+
+    private static final String INSERT_ENROLLMENTS =
+            "INSERT INTO course_students (course_id, student_id) " +
+            "SELECT ?, t.id FROM unnest(?::bigint[]) AS t(id) ON CONFLICT DO NOTHING";
+
+    private static final String DELETE_ENROLLMENTS =
+            "DELETE FROM course_students WHERE course_id = ? AND student_id = ANY(?::bigint[])";
+
+    private static final String ADJUST_ENROLLED_COUNT =
+            "UPDATE courses SET enrolled_count = GREATEST(enrolled_count + ?, 0) WHERE id = ?";
+
+    // Порядок очереди (id записи) повторяет порядок в запросе
+    private static final String INSERT_WAITLIST =
+            "INSERT INTO course_waitlist (course_id, student_id, created_at) " +
+            "SELECT ?, t.id, now() FROM unnest(?::bigint[]) WITH ORDINALITY AS t(id, ord) " +
+            "ORDER BY t.ord ON CONFLICT DO NOTHING";
+
+    private static final String DELETE_WAITLIST =
+            "DELETE FROM course_waitlist WHERE course_id = ? AND student_id = ANY(?::bigint[])";
+
+    public record SeatState(String title, Integer capacity, int enrolledCount) {
+    }
+
+    public record DiffRow(long studentId, boolean requested, boolean enrolled, boolean student, boolean waitlisted) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CourseRosterRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<SeatState> lockCourse(Long courseId) {
+        return jdbcTemplate.query(LOCK_COURSE, (rs, rowNum) -> new SeatState(
+                rs.getString("title"), rs.getObject("capacity", Integer.class), rs.getInt("enrolled_count")),
+                courseId).stream().findFirst();
+    }
+
+    public List<DiffRow> diff(Long courseId, List<Long> studentIds, boolean includeRoster) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_DIFF);
+            statement.setLong(1, courseId);
+            statement.setArray(2, connection.createArrayOf("bigint", studentIds.toArray()));
+            statement.setLong(3, courseId);
+            statement.setBoolean(4, includeRoster);
+            return statement;
+        }, (rs, rowNum) -> new DiffRow(rs.getLong("id"), rs.getBoolean("requested"), rs.getBoolean("enrolled"),
+                rs.getBoolean("student"), rs.getBoolean("waitlisted")));
+    }
+
+    public int insertEnrollments(Long courseId, List<Long> studentIds) {
+        return update(INSERT_ENROLLMENTS, courseId, studentIds);
+    }
+
+    public int deleteEnrollments(Long courseId, List<Long> studentIds) {
+        return update(DELETE_ENROLLMENTS, courseId, studentIds);
+    }
+
+    public int adjustEnrolledCount(Long courseId, int delta) {
+        return delta == 0 ? 0 : jdbcTemplate.update(ADJUST_ENROLLED_COUNT, delta, courseId);
+    }
+
+    public int insertWaitlist(Long courseId, List<Long> studentIds) {
+        return update(INSERT_WAITLIST, courseId, studentIds);
+    }
+
+    public int deleteWaitlist(Long courseId, List<Long> studentIds) {
+        return update(DELETE_WAITLIST, courseId, studentIds);
+    }
+
+    // Пустой список - без обращения к базе
+    private int update(String sql, Long courseId, List<Long> studentIds) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setLong(1, courseId);
+            statement.setArray(2, connection.createArrayOf("bigint", studentIds.toArray()));
+            return statement;
+        });
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.repository;
+
+import com.example.movies.dto.CourseSummaryDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Поиск курсов по индексам из db/init.sql. Запрос собирается только из заданных фильтров:
+// с условиями вида (:q IS NULL OR ...) общий план подготовленного запроса не может использовать индекс.
+@Repository
+public class CourseSearchRepository {
+
+    // Совпадают с выражениями индексов idx_courses_search_fts и idx_users_name_trgm
+    private static final String SEARCH_DOCUMENT =
+            "to_tsvector('russian', coalesce(c.title, '') || ' ' || coalesce(c.description, ''))";
+    private static final String TEACHER_NAME = "(t.username || ' ' || t.first_name || ' ' || t.last_name)";
+
+    // Допустимые значения sort (проверяет вызывающий); relevance без текста запроса - порядок по id
+    private static final Map<String, String> ORDER_BY = Map.of(
+            "relevance", "rank DESC, c.id",
+            "title", "c.title, c.id",
+            "-title", "c.title DESC, c.id DESC",
+            "newest", "c.id DESC",
+            "oldest", "c.id");
+
+    public static final Set<String> SORT_OPTIONS = ORDER_BY.keySet();
+
+    private static final RowMapper<CourseSummaryDTO> SUMMARY_MAPPER = (rs, rowNum) -> new CourseSummaryDTO(
+            rs.getLong("id"), rs.getString("title"), rs.getString("description"),
+            rs.getObject("teacher_id", Long.class), rs.getObject("capacity", Integer.class),
+            rs.getInt("enrolled_count"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CourseSearchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // query - текст в синтаксисе websearch_to_tsquery, teacherName - подстрока имени или логина преподавателя
+    public List<CourseSummaryDTO> search(String query, String teacherName, String sort, int limit, long offset) {
+        List<Object> args = new ArrayList<>();
+        String sql = buildQuery(query, teacherName, sort, args) + " LIMIT ? OFFSET ?";
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.query(sql, SUMMARY_MAPPER, args.toArray());
+    }
+
+    // План поискового запроса (EXPLAIN) - для проверки, что фильтры идут по индексам
+    public List<String> explain(String query, String teacherName, String sort, int limit, long offset) {
+        List<Object> args = new ArrayList<>();
+        String sql = "EXPLAIN " + buildQuery(query, teacherName, sort, args) + " LIMIT ? OFFSET ?";
+        args.add(limit);
+        args.add(offset);
+        return jdbcTemplate.queryForList(sql, String.class, args.toArray());
+    }
+
+    private String buildQuery(String query, String teacherName, String sort, List<Object> args) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT c.id, c.title, c.description, t.id AS teacher_id, c.capacity, c.enrolled_count, ");
+        sql.append(query != null ? "ts_rank(" + SEARCH_DOCUMENT + ", q) AS rank " : "0 AS rank ");
+        // Помеченный на удаление преподаватель не показывается, как и в каталоге
+        sql.append("FROM courses c LEFT JOIN users t ON t.id = c.teacher_id AND t.deleted_at IS NULL");
+        List<String> conditions = new ArrayList<>();
+        if (query != null) {
+            sql.append(" CROSS JOIN websearch_to_tsquery('russian', ?) AS q");
+            args.add(query);
+            conditions.add(SEARCH_DOCUMENT + " @@ q");
+        }
+        if (teacherName != null) {
+            conditions.add(TEACHER_NAME + " ILIKE ?");
+            args.add("%" + escapeLike(teacherName) + "%");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        String orderBy = ORDER_BY.get(sort);
+        sql.append(" ORDER BY ").append(query != null ? orderBy : orderBy.replace("rank DESC, ", ""));
+        return sql.toString();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.repository;
+
+import com.example.movies.model.CourseWaitlistEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CourseWaitlistRepository extends JpaRepository<CourseWaitlistEntry, Long> {
+
+    // 0 - студент уже в очереди на этот курс
+    @Modifying
+    @Query(value = "INSERT INTO course_waitlist (course_id, student_id, created_at) " +
+                   "VALUES (:courseId, :studentId, now()) ON CONFLICT DO NOTHING", nativeQuery = true)
+    int insertEntry(Long courseId, Long studentId);
+
+    // Номер студента в очереди, начиная с 1; 0 - студента в очереди нет
+    @Query(value = "SELECT count(*) FROM course_waitlist w WHERE w.course_id = :courseId AND w.id <= " +
+                   "(SELECT id FROM course_waitlist WHERE course_id = :courseId AND student_id = :studentId)",
+           nativeQuery = true)
+    long findPosition(Long courseId, Long studentId);
+
+    // Голова очереди: [id, student_id]. Помеченные на удаление пользователи пропускаются,
+    // строку, которую уже забирает параллельная транзакция, - тоже (SKIP LOCKED)
+    @Query(value = "SELECT w.id, w.student_id FROM course_waitlist w " +
+                   "JOIN users u ON u.id = w.student_id AND u.deleted_at IS NULL " +
+                   "WHERE w.course_id = :courseId ORDER BY w.id LIMIT 1 FOR UPDATE OF w SKIP LOCKED",
+           nativeQuery = true)
+    List<Object[]> findHead(Long courseId);
+
+    @Modifying
+    @Query(value = "DELETE FROM course_waitlist WHERE id = :id", nativeQuery = true)
+    int deleteEntry(Long id);
+
+    @Modifying
+    @Query(value = "DELETE FROM course_waitlist WHERE course_id = :courseId AND student_id = :studentId",
+           nativeQuery = true)
+    int deleteEntry(Long courseId, Long studentId);
+}
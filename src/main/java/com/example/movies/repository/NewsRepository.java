@@ -28,15 +28,28 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 @Repository
 public interface NewsRepository extends JpaRepository<News, Long> {
-    @Query("SELECT n FROM News n WHERE " +
-           "(:title IS NULL OR n.title = :title) AND " +
-           "(:likeTitle IS NULL OR n.title LIKE %:likeTitle%)")
+    // countQuery задан явно: выведенный Spring Data COUNT теряет параметры, повторённые в LIKE
+    @Query(value = "SELECT n FROM News n WHERE " +
+                   "(:title IS NULL OR n.title = :title) AND " +
+                   "(:likeTitle IS NULL OR n.title LIKE %:likeTitle%)",
+           countQuery = "SELECT COUNT(n) FROM News n WHERE " +
+                        "(:title IS NULL OR n.title = :title) AND " +
+                        "(:likeTitle IS NULL OR n.title LIKE %:likeTitle%)")
     Page<News> findByFilters(@Param("title") String title, 
                              @Param("likeTitle") String likeTitle, 
                              Pageable pageable);
+
+    // Без COUNT: size + 1 строк определяют hasNext
+    @Query("SELECT n FROM News n WHERE " +
+           "(:title IS NULL OR n.title = :title) AND " +
+           "(:likeTitle IS NULL OR n.title LIKE %:likeTitle%)")
+    Slice<News> findByFiltersAsSlice(@Param("title") String title,
+                                     @Param("likeTitle") String likeTitle,
+                                     Pageable pageable);
 }
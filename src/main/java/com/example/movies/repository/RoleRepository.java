@@ -25,9 +25,29 @@ package com.example.movies.repository;
 
 import com.example.movies.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
     Role findByName(String name);
+
+    // Число пользователей каждой роли одним GROUP BY по связующей таблице: (id, name, count)
+    @Query(value = "SELECT r.id, r.name, COUNT(u.id) FROM roles r " +
+                   "LEFT JOIN users_roles ur ON ur.role_id = r.id " +
+                   "LEFT JOIN users u ON u.id = ur.user_id AND u.deleted_at IS NULL " +
+                   "GROUP BY r.id, r.name ORDER BY r.id",
+           nativeQuery = true)
+    List<Object[]> countUsersByRole();
+
+    // Новые пользователи по ролям и неделям начиная с since: (role_id, понедельник недели, count)
+    @Query(value = "SELECT ur.role_id, CAST(date_trunc('week', u.created_at) AS date) AS week_start, COUNT(*) " +
+                   "FROM users_roles ur JOIN users u ON u.id = ur.user_id " +
+                   "WHERE u.created_at >= :since AND u.deleted_at IS NULL " +
+                   "GROUP BY ur.role_id, week_start ORDER BY ur.role_id, week_start",
+           nativeQuery = true)
+    List<Object[]> countNewUsersByRoleAndWeek(LocalDateTime since);
 }
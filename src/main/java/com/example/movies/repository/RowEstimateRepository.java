@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Оценка числа строк по статистике планировщика (EXPLAIN) вместо COUNT(*).
+// Запросы повторяют условия соответствующих постраничных выборок без сортировки и LIMIT.
+@Repository
+public class RowEstimateRepository {
+
+    private static final String USERS = "SELECT 1 FROM users u WHERE u.deleted_at IS NULL";
+
+    // По id роли, а не по имени: так планировщик берёт частоту из статистики users_roles.role_id
+    private static final String USERS_BY_ROLE = "SELECT 1 FROM users_roles ur WHERE ur.role_id = ?";
+
+    private static final String USERS_BY_ROLE_AND_USERNAME =
+            "SELECT 1 FROM users_roles ur JOIN users u ON u.id = ur.user_id " +
+            "WHERE ur.role_id = ? AND lower(u.username) LIKE lower('%' || ? || '%')";
+
+    private static final String COURSES =
+            "SELECT 1 FROM courses c JOIN users t ON t.id = c.teacher_id " +
+            "WHERE (CAST(? AS text) IS NULL OR c.title = ?) " +
+            "AND (CAST(? AS text) IS NULL OR c.description LIKE '%' || ? || '%') " +
+            "AND (CAST(? AS text) IS NULL OR t.username LIKE '%' || ? || '%')";
+
+    // Каталог соединяет преподавателя через LEFT JOIN: без фильтра по нему курсы без преподавателя
+    // тоже считаются, поэтому соединение не нужно вовсе
+    private static final String CATALOG_WITHOUT_TEACHER_FILTER =
+            "SELECT 1 FROM courses c " +
+            "WHERE (CAST(? AS text) IS NULL OR c.title = ?) " +
+            "AND (CAST(? AS text) IS NULL OR c.description LIKE '%' || ? || '%')";
+
+    private static final String NEWS =
+            "SELECT 1 FROM news n " +
+            "WHERE (CAST(? AS text) IS NULL OR n.title = ?) " +
+            "AND (CAST(? AS text) IS NULL OR n.title LIKE '%' || ? || '%')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public RowEstimateRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    public long estimateUsers() {
+        return estimate(USERS);
+    }
+
+    public long estimateUsersByRole(Long roleId) {
+        return estimate(USERS_BY_ROLE, roleId);
+    }
+
+    public long estimateUsersByRoleAndUsernameContaining(Long roleId, String username) {
+        return estimate(USERS_BY_ROLE_AND_USERNAME, roleId, username);
+    }
+
+    public long estimateCourses(String title, String description, String teacherName) {
+        return estimate(COURSES, title, title, description, description, teacherName, teacherName);
+    }
+
+    public long estimateCatalog(String title, String description, String teacherName) {
+        if (teacherName == null) {
+            return estimate(CATALOG_WITHOUT_TEACHER_FILTER, title, title, description, description);
+        }
+        return estimateCourses(title, description, teacherName);
+    }
+
+    public long estimateNews(String title, String likeTitle) {
+        return estimate(NEWS, title, title, likeTitle, likeTitle);
+    }
+
+    // Plan Rows верхнего узла плана; значения параметров подставляются до планирования
+    private long estimate(String sql, Object... args) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN (FORMAT JSON) " + sql, String.class, args);
+        try {
+            return objectMapper.readTree(plan).get(0).get("Plan").get("Plan Rows").asLong();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unexpected EXPLAIN output", e);
+        }
+    }
+}
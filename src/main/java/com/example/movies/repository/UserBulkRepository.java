@@ -0,0 +1,230 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.repository;
+
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Массовые операции с пользователями в обход JPA. Вставка: с IDENTITY-ключами Hibernate
+// не батчит INSERT, поэтому пачка уходит одним INSERT ... SELECT FROM unnest(массивы).
+// Выгрузка: курсор БД с фиксированным fetch size, строки не копятся в памяти.
+// Удаление: ссылки на пользователя чистятся пачками, каждая пачка - отдельная короткая транзакция.
+@Repository
+public class UserBulkRepository {
+
+    private static final String INSERT_USERS =
+            "INSERT INTO users (username, email, password, first_name, last_name, " +
+            "subscribed_to_newsletter, token_version, created_at) " +
+            "SELECT u.username, u.email, u.password, u.first_name, u.last_name, false, 0, LOCALTIMESTAMP " +
+            "FROM unnest(?::text[], ?::text[], ?::text[], ?::text[], ?::text[]) " +
+            "AS u(username, email, password, first_name, last_name) " +
+            "ON CONFLICT DO NOTHING " +
+            "RETURNING id, username";
+
+    private static final String INSERT_USER_ROLES =
+            "INSERT INTO users_roles (user_id, role_id) SELECT * FROM unnest(?::bigint[], ?::bigint[])";
+
+    // Роли собираются в той же выборке через LATERAL JOIN; порядок по id позволяет идти по первичному ключу
+    private static final String SELECT_EXPORT =
+            "SELECT u.id, u.username, u.email, u.first_name, u.last_name, u.created_at, ro.roles " +
+            "FROM users u LEFT JOIN LATERAL (" +
+            "SELECT string_agg(r.name, ';' ORDER BY r.name) AS roles " +
+            "FROM users_roles ur JOIN roles r ON r.id = ur.role_id WHERE ur.user_id = u.id) ro ON true " +
+            "WHERE u.deleted_at IS NULL ORDER BY u.id";
+
+    // Вместе с записями освобождает места в счётчиках курсов; возвращает число удалённых
+    // записей и id затронутых курсов
+    private static final String DELETE_ENROLLMENTS_BATCH =
+            "WITH removed AS (DELETE FROM course_students WHERE ctid = ANY(ARRAY(" +
+            "SELECT ctid FROM course_students WHERE student_id = ? LIMIT ?)) RETURNING course_id), " +
+            "updated AS (UPDATE courses c SET enrolled_count = GREATEST(c.enrolled_count - r.n, 0) " +
+            "FROM (SELECT course_id, count(*) AS n FROM removed GROUP BY course_id) r " +
+            "WHERE c.id = r.course_id RETURNING c.id) " +
+            "SELECT (SELECT count(*) FROM removed) AS deleted, ARRAY(SELECT id FROM updated) AS course_ids";
+
+    private static final String UNASSIGN_COURSES_BATCH =
+            "UPDATE courses SET teacher_id = NULL WHERE id IN (" +
+            "SELECT id FROM courses WHERE teacher_id = ? LIMIT ?)";
+
+    private static final String REASSIGN_NEWS_BATCH =
+            "UPDATE news SET author_id = ? WHERE id IN (" +
+            "SELECT id FROM news WHERE author_id = ? LIMIT ?)";
+
+    private static final String REASSIGN_EVENTS_BATCH =
+            "UPDATE events SET teacher_id = ? WHERE id IN (" +
+            "SELECT id FROM events WHERE teacher_id = ? LIMIT ?)";
+
+    // Запись времени активности пачкой. GREATEST не даёт более старому значению (например,
+    // с другого экземпляра) затереть новое и пропускает NULL, если одного из времён нет.
+    private static final String UPDATE_ACTIVITY_PREFIX =
+            "UPDATE users u SET last_login_at = GREATEST(u.last_login_at, v.login_at), " +
+            "last_seen_at = GREATEST(u.last_seen_at, v.seen_at) FROM (VALUES ";
+    private static final String UPDATE_ACTIVITY_SUFFIX =
+            ") AS v(id, login_at, seen_at) WHERE u.id = v.id";
+    private static final String ACTIVITY_VALUES_ROW = "(?::bigint, ?::timestamp, ?::timestamp)";
+
+    public record EnrollmentBatch(int deleted, List<Long> courseIds) {
+    }
+
+    public record ActivityRow(long userId, LocalDateTime lastLoginAt, LocalDateTime lastSeenAt) {
+    }
+
+    public record ExportRow(long id, String username, String email, String firstName, String lastName,
+                            LocalDateTime createdAt, String roles) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Вставляет пользователей с их ролями. Строки, нарушающие уникальность имени или email
+    // (в том числе внутри самой пачки), пропускаются. Возвращает username -> id вставленных.
+    @Transactional
+    public Map<String, Long> insertAll(List<User> users) {
+        int size = users.size();
+        String[][] columns = new String[5][size];
+        for (int i = 0; i < size; i++) {
+            User user = users.get(i);
+            columns[0][i] = user.getUsername();
+            columns[1][i] = user.getEmail();
+            columns[2][i] = user.getPassword();
+            columns[3][i] = user.getFirstName();
+            columns[4][i] = user.getLastName();
+        }
+
+        Map<String, Long> ids = new HashMap<>(size * 2);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_USERS);
+            for (int c = 0; c < columns.length; c++) {
+                statement.setArray(c + 1, connection.createArrayOf("text", columns[c]));
+            }
+            return statement;
+        }, rs -> {
+            ids.put(rs.getString("username"), rs.getLong("id"));
+        });
+
+        List<Long> userIds = new ArrayList<>();
+        List<Long> roleIds = new ArrayList<>();
+        for (User user : users) {
+            Long id = ids.get(user.getUsername());
+            if (id == null) {
+                continue;
+            }
+            for (Role role : user.getRoles()) {
+                userIds.add(id);
+                roleIds.add(role.getId());
+            }
+        }
+        if (!userIds.isEmpty()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(INSERT_USER_ROLES);
+                statement.setArray(1, connection.createArrayOf("bigint", userIds.toArray()));
+                statement.setArray(2, connection.createArrayOf("bigint", roleIds.toArray()));
+                return statement;
+            });
+        }
+        return ids;
+    }
+
+    // Одним UPDATE ... FROM (VALUES ...) обновляет время входа и активности; возвращает число строк
+    public int updateActivity(List<ActivityRow> rows) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder(UPDATE_ACTIVITY_PREFIX);
+        Object[] args = new Object[rows.size() * 3];
+        for (int i = 0; i < rows.size(); i++) {
+            ActivityRow row = rows.get(i);
+            sql.append(i == 0 ? "" : ", ").append(ACTIVITY_VALUES_ROW);
+            args[i * 3] = row.userId();
+            args[i * 3 + 1] = row.lastLoginAt() != null ? Timestamp.valueOf(row.lastLoginAt()) : null;
+            args[i * 3 + 2] = row.lastSeenAt() != null ? Timestamp.valueOf(row.lastSeenAt()) : null;
+        }
+        sql.append(UPDATE_ACTIVITY_SUFFIX);
+        return jdbcTemplate.update(sql.toString(), args);
+    }
+
+    // Пачки для удаления пользователя: каждая возвращает затронутые строки, пусто/0 - ссылок не осталось
+    public EnrollmentBatch deleteEnrollmentsBatch(Long userId, int batchSize) {
+        return jdbcTemplate.queryForObject(DELETE_ENROLLMENTS_BATCH, (rs, rowNum) -> new EnrollmentBatch(
+                rs.getInt("deleted"), List.of((Long[]) rs.getArray("course_ids").getArray())), userId, batchSize);
+    }
+
+    public int unassignCoursesBatch(Long userId, int batchSize) {
+        return jdbcTemplate.update(UNASSIGN_COURSES_BATCH, userId, batchSize);
+    }
+
+    public int reassignNewsBatch(Long userId, Long newAuthorId, int batchSize) {
+        return jdbcTemplate.update(REASSIGN_NEWS_BATCH, newAuthorId, userId, batchSize);
+    }
+
+    public int reassignEventsBatch(Long userId, Long newTeacherId, int batchSize) {
+        return jdbcTemplate.update(REASSIGN_EVENTS_BATCH, newTeacherId, userId, batchSize);
+    }
+
+    // Последний шаг: оставшиеся строки пользователя и он сам, одной транзакцией
+    @Transactional
+    public int purgeUser(Long userId) {
+        int rows = jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id = ?", userId);
+        rows += jdbcTemplate.update("DELETE FROM users_roles WHERE user_id = ?", userId);
+        rows += jdbcTemplate.update("DELETE FROM users WHERE id = ? AND deleted_at IS NOT NULL", userId);
+        return rows;
+    }
+
+    // Передаёт пользователей обработчику по одному. Драйвер PostgreSQL читает курсором только
+    // внутри транзакции, поэтому вызывать из @Transactional метода.
+    public void streamAll(int fetchSize, Consumer<ExportRow> handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_EXPORT,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            handler.accept(new ExportRow(
+                    rs.getLong("id"),
+                    rs.getString("username"),
+                    rs.getString("email"),
+                    rs.getString("first_name"),
+                    rs.getString("last_name"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null,
+                    rs.getString("roles")));
+        });
+    }
+}
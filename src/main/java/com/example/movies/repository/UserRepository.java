@@ -23,16 +23,24 @@
  */
 package com.example.movies.repository;
 
+import com.example.movies.dto.UserDTO;
 import com.example.movies.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+    // Текст для нечёткого поиска; совпадает с выражением индекса idx_users_search_trgm в db/init.sql
+    String SEARCH_TEXT = "(u.username || ' ' || u.first_name || ' ' || u.last_name || ' ' || u.email)";
+
     List<User> findByRoles_Name(String roleName);
     User findByUsername(String username);
     
@@ -47,10 +55,131 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     User findByEmail(String email);
 
+    // Служебный пользователь из db/init.sql (UserDeletionService)
+    User findFirstBySystemAccountTrueOrderByIdAsc();
+
     List<User> findBySubscribedToNewsletter(boolean subscribed);
 
     Page<User> findByRoles_NameAndUsernameContainingIgnoreCase(String roleName, String username, Pageable pageable);
 
+    // Проверка роли по ключу без загрузки пользователя и его ролей
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM users_roles ur JOIN roles r ON r.id = ur.role_id " +
+                   "JOIN users u ON u.id = ur.user_id " +
+                   "WHERE ur.user_id = :userId AND r.name = :roleName AND u.deleted_at IS NULL)", nativeQuery = true)
+    boolean hasRole(Long userId, String roleName);
+
+    // Адресаты уведомлений: [username, email]
+    @Query("SELECT u.username, u.email FROM User u WHERE u.id IN :ids")
+    List<Object[]> findContactsByIdIn(Collection<Long> ids);
+
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // Какие из переданных имён и email уже заняты: одна выборка на пачку импорта
+    @Query("SELECT u.username FROM User u WHERE u.username IN :usernames")
+    List<String> findExistingUsernames(Collection<String> usernames);
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(Collection<String> emails);
+
+    // Проекции для постраничных списков: без загрузки сущностей и их EAGER-ролей
+    @Query(value = "SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u",
+           countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserDTO> findAllDTOs(Pageable pageable);
+
+    @Query(value = "SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+                   "WHERE r.name = :roleName",
+           countQuery = "SELECT COUNT(u) FROM User u JOIN u.roles r WHERE r.name = :roleName")
+    Page<UserDTO> findDTOsByRoleName(String roleName, Pageable pageable);
+
+    @Query(value = "SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+                   "WHERE r.name = :roleName AND LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))",
+           countQuery = "SELECT COUNT(u) FROM User u JOIN u.roles r " +
+                        "WHERE r.name = :roleName AND LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))")
+    Page<UserDTO> findDTOsByRoleNameAndUsernameContaining(String roleName, String username, Pageable pageable);
+
+    // Те же выборки без COUNT: Slice запрашивает size + 1 строк и по ним определяет hasNext
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u")
+    Slice<UserDTO> findAllDTOsAsSlice(Pageable pageable);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName")
+    Slice<UserDTO> findDTOsByRoleNameAsSlice(String roleName, Pageable pageable);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName AND LOWER(u.username) LIKE LOWER(CONCAT('%', :username, '%'))")
+    Slice<UserDTO> findDTOsByRoleNameAndUsernameContainingAsSlice(String roleName, String username, Pageable pageable);
+
+    // Keyset-пагинация по (username, id): следующая страница ищется по индексу, без OFFSET
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u " +
+           "ORDER BY u.username, u.id")
+    List<UserDTO> findFirstDTOs(Limit limit);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u " +
+           "WHERE (u.username, u.id) > (:username, :id) ORDER BY u.username, u.id")
+    List<UserDTO> findDTOsAfter(String username, Long id, Limit limit);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName ORDER BY u.username, u.id")
+    List<UserDTO> findFirstDTOsByRoleName(String roleName, Limit limit);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName AND (u.username, u.id) > (:username, :id) ORDER BY u.username, u.id")
+    List<UserDTO> findDTOsByRoleNameAfter(String roleName, String username, Long id, Limit limit);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName AND LOWER(u.username) LIKE LOWER(CONCAT('%', :nameLike, '%')) " +
+           "ORDER BY u.username, u.id")
+    List<UserDTO> findFirstDTOsByRoleNameAndUsernameContaining(String roleName, String nameLike, Limit limit);
+
+    @Query("SELECT new com.example.movies.dto.UserDTO(u.id, u.username, u.email) FROM User u JOIN u.roles r " +
+           "WHERE r.name = :roleName AND LOWER(u.username) LIKE LOWER(CONCAT('%', :nameLike, '%')) " +
+           "AND (u.username, u.id) > (:username, :id) ORDER BY u.username, u.id")
+    List<UserDTO> findDTOsByRoleNameAndUsernameContainingAfter(String roleName, String nameLike,
+                                                              String username, Long id, Limit limit);
+
+    long countByRoles_Name(String roleName);
+
+    long countByRoles_NameAndUsernameContainingIgnoreCase(String roleName, String username);
+
+    // Порог оператора <% действует до конца текущей транзакции
+    @Query(value = "SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)", nativeQuery = true)
+    String setWordSimilarityThreshold(String threshold);
+
+    // Нечёткий поиск по триграммному индексу. Ранжируются не более maxCandidates совпадений,
+    // поэтому стоимость запроса ограничена и для очень частых слов. Ранжирование приблизительное:
+    // кандидаты берутся в порядке индекса, при частом слове лучшее совпадение может в них не попасть.
+    // Последний столбец - число кандидатов; равное maxCandidates значит, что список обрезан.
+    @Query(value = "WITH candidates AS MATERIALIZED (" +
+                   "SELECT u.id, u.username, u.email, u.first_name, u.last_name, " +
+                   "word_similarity(:query, " + SEARCH_TEXT + ") AS score " +
+                   "FROM users u WHERE :query <% " + SEARCH_TEXT + " AND u.deleted_at IS NULL " +
+                   "AND (CAST(:roleId AS bigint) IS NULL OR EXISTS (" +
+                   "SELECT 1 FROM users_roles ur WHERE ur.user_id = u.id AND ur.role_id = :roleId)) " +
+                   "LIMIT :maxCandidates) " +
+                   "SELECT id, username, email, first_name, last_name, score, " +
+                   "(SELECT count(*) FROM candidates) AS candidate_count FROM candidates " +
+                   "ORDER BY score DESC, username LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<Object[]> searchUsers(String query, Long roleId, int maxCandidates, int limit, int offset);
+
+    // Роли сразу для всей страницы: пары (id пользователя, имя роли)
+    @Query("SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :userIds")
+    List<Object[]> findRoleNamesByUserIds(Collection<Long> userIds);
+
+    // Пользователи роли вместе с ролями одним запросом
+    @Query("SELECT DISTINCT u FROM User u JOIN FETCH u.roles " +
+           "WHERE u.id IN (SELECT ru.id FROM User ru JOIN ru.roles rr WHERE rr.name = :roleName)")
+    List<User> findWithRolesByRoleName(String roleName);
+
+    // Постраничная выгрузка имён и email по id для заполнения фильтров регистрации
+    @Query("SELECT u.id, u.username, u.email FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findCredentialsAfter(Long afterId, Pageable pageable);
+
+    // Версии токенов читаются нативно, чтобы учитывать и помеченных на удаление пользователей
+    @Query(value = "SELECT u.id, u.token_version FROM users u WHERE u.token_version > 0", nativeQuery = true)
+    List<Object[]> findTokenVersions();
+
+    @Query(value = "SELECT u.id, u.token_version FROM users u WHERE u.tokens_revoked_at > :since", nativeQuery = true)
+    List<Object[]> findTokenVersionsChangedSince(LocalDateTime since);
 }
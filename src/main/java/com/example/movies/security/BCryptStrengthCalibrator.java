@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+// Подбирает стоимость BCrypt под текущее железо: максимальную, при которой
+// хеширование укладывается в целевое время. Замеры пишутся в лог, чтобы по ним
+// можно было осознанно выбрать целевое время.
+public final class BCryptStrengthCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BCryptStrengthCalibrator.class);
+
+    private static final String SAMPLE_PASSWORD = "calibration-Password-123";
+
+    private BCryptStrengthCalibrator() {
+    }
+
+    public static int calibrate(long targetMillis, int minStrength, int maxStrength) {
+        // Прогрев, чтобы первый замер не включал JIT-компиляцию
+        new BCryptPasswordEncoder(4).encode(SAMPLE_PASSWORD);
+
+        int chosen = minStrength;
+        for (int strength = minStrength; strength <= maxStrength; strength++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+            long start = System.nanoTime();
+            String hash = encoder.encode(SAMPLE_PASSWORD);
+            long encodeMillis = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            encoder.matches(SAMPLE_PASSWORD, hash);
+            long matchMillis = (System.nanoTime() - start) / 1_000_000;
+
+            logger.info("BCrypt strength {}: encode {} ms, match {} ms", strength, encodeMillis, matchMillis);
+            if (matchMillis > targetMillis) {
+                break;
+            }
+            chosen = strength;
+        }
+        logger.info("Using BCrypt strength {} for target {} ms", chosen, targetMillis);
+        return chosen;
+    }
+}
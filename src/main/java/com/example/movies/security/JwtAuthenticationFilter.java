@@ -24,6 +24,8 @@
 package com.example.movies.security;
 
 import com.example.movies.service.CustomUserDetailsService;
+import com.example.movies.service.UserActivityService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -51,25 +53,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Autowired
+    private UserActivityService userActivityService;
+
+    // Публичные маршруты, не использующие пользователя, проходят без разбора токена
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return PublicEndpoints.skipsAuthentication(request);
+    }
+
     @Override
     protected void doFilterInternal(
             HttpServletRequest request,
             HttpServletResponse response,
             FilterChain filterChain) throws IOException, ServletException {
 
-        String uri = request.getRequestURI();
-        // Skip JWT filter for /auth and Swagger endpoints
-        if(uri.startsWith("/auth/") || uri.startsWith("/swagger-ui/") || uri.startsWith("/v3/api-docs")) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateToken(jwt)) {
-                String username = jwtUtils.getUsernameFromToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            Claims claims = jwt != null ? jwtUtils.getVerifiedClaims(jwt) : null;
+            UserDetails userDetails = claims != null ? resolveUser(claims) : null;
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authentication = 
                     new UsernamePasswordAuthenticationToken(
                         userDetails, 
@@ -79,6 +88,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (userDetails instanceof UserPrincipal principal) {
+                    userActivityService.recordSeen(principal.getId());
+                }
             }
         } catch (Exception ex) {
             logger.error("JWT authentication error: {}", ex.getMessage(), ex);
@@ -86,6 +98,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails resolveUser(Claims claims) {
+        // Проверки отзыва - два поиска в памяти, без обращения к БД
+        if (jwtUtils.isRevocable(claims)) {
+            if (!tokenVersionRegistry.isCurrent(jwtUtils.getUserId(claims), jwtUtils.getTokenVersion(claims))) {
+                logger.debug("Rejected token with outdated version for {}", claims.getSubject());
+                return null;
+            }
+            if (tokenDenylist.isRevoked(claims.getId())) {
+                logger.debug("Rejected revoked token for {}", claims.getSubject());
+                return null;
+            }
+        }
+        if (!jwtUtils.hasEmbeddedRoles(claims)) {
+            return userDetailsService.loadUserByUsername(claims.getSubject());
+        }
+        // Роли берём из подписанного токена, без запросов к БД
+        return jwtUtils.getPrincipal(claims);
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
@@ -23,11 +23,21 @@
  */
 package com.example.movies.security;
 
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.SecretKey;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 
 @Component
 public class JwtUtils {
@@ -38,6 +48,27 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
+    // Если включено, токен несёт роли пользователя,
+    // и фильтр аутентифицирует запрос без обращения к БД
+    @Value("${jwt.embed-roles:false}")
+    private boolean embedRoles;
+
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_VERSION = "ver";
+
+    // Ключ и парсер потокобезопасны, поэтому создаём их один раз при старте
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+    }
+
     public String generateToken(String username) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
@@ -46,29 +77,77 @@ public class JwtUtils {
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(io.jsonwebtoken.security.Keys.hmacShaKeyFor(jwtSecret.getBytes()), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    // Токен всегда несёт id пользователя, версию и jti, чтобы его можно было отозвать
+    public String generateToken(User user) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtExpiration);
+
+        JwtBuilder builder = Jwts.builder()
+                .setSubject(user.getUsername())
+                .setId(UUID.randomUUID().toString())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_VERSION, user.getTokenVersion());
+        if (embedRoles) {
+            List<String> roles = new ArrayList<>();
+            for (Role role : user.getRoles()) {
+                roles.add(role.getName());
+            }
+            builder.claim(CLAIM_ROLES, roles);
+        }
+        return builder
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    // Проверяет подпись и срок действия за один разбор токена.
+    // Возвращает claims или null, если токен невалиден.
+    public Claims getVerifiedClaims(String token) {
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
     public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder()
-                   .setSigningKey(jwtSecret.getBytes())
-                   .build()
-                   .parseClaimsJws(token)
-                   .getBody()
-                   .getSubject();
+        return parser.parseClaimsJws(token)
+                     .getBody()
+                     .getSubject();
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder()
-                .setSigningKey(jwtSecret.getBytes())
-                .build()
-                .parseClaimsJws(token);
-            return true;
-        } catch (JwtException ex) {
-            // например, можно логировать ошибки
-            return false;
+        return getVerifiedClaims(token) != null;
+    }
+
+    public boolean hasEmbeddedRoles(Claims claims) {
+        return claims.containsKey(CLAIM_ROLES) && claims.containsKey(CLAIM_USER_ID);
+    }
+
+    public boolean isRevocable(Claims claims) {
+        return claims.containsKey(CLAIM_USER_ID);
+    }
+
+    public Long getUserId(Claims claims) {
+        return claims.get(CLAIM_USER_ID, Long.class);
+    }
+
+    public int getTokenVersion(Claims claims) {
+        Integer version = claims.get(CLAIM_VERSION, Integer.class);
+        return version != null ? version : 0;
+    }
+
+    public UserPrincipal getPrincipal(Claims claims) {
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (Object role : roles) {
+            authorities.add(new SimpleGrantedAuthority(role.toString()));
         }
+        return new UserPrincipal(getUserId(claims), claims.getSubject(), null, authorities);
     }
 }
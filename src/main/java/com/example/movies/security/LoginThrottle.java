@@ -0,0 +1,149 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Ограничение частоты попыток входа по имени пользователя и по IP.
+// Лишние попытки отклоняются до поиска пользователя в БД и до BCrypt.
+@Component
+public class LoginThrottle {
+
+    private final Limit usernameLimit;
+    private final Limit ipLimit;
+    private final Cache<String, TokenBucket> usernameBuckets;
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final Counter usernameRejections;
+    private final Counter ipRejections;
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public LoginThrottle(MeterRegistry meterRegistry,
+                         @Value("${security.login-throttle.username.capacity:5}") int usernameCapacity,
+                         @Value("${security.login-throttle.username.per-minute:5}") int usernamePerMinute,
+                         @Value("${security.login-throttle.ip.capacity:20}") int ipCapacity,
+                         @Value("${security.login-throttle.ip.per-minute:60}") int ipPerMinute,
+                         @Value("${security.login-throttle.max-keys:100000}") long maxKeys) {
+        this(meterRegistry, Limit.perMinute(usernameCapacity, usernamePerMinute),
+                Limit.perMinute(ipCapacity, ipPerMinute), maxKeys, System::nanoTime);
+    }
+
+    LoginThrottle(MeterRegistry meterRegistry, Limit usernameLimit, Limit ipLimit, long maxKeys, LongSupplier nanoClock) {
+        this.usernameLimit = usernameLimit;
+        this.ipLimit = ipLimit;
+        this.nanoClock = nanoClock;
+        this.usernameBuckets = newBucketCache(usernameLimit, maxKeys);
+        this.ipBuckets = newBucketCache(ipLimit, maxKeys);
+        this.usernameRejections = Counter.builder("auth.login.throttled").tag("scope", "username")
+                .description("Попытки входа, отклонённые ограничителем")
+                .register(meterRegistry);
+        this.ipRejections = Counter.builder("auth.login.throttled").tag("scope", "ip")
+                .description("Попытки входа, отклонённые ограничителем")
+                .register(meterRegistry);
+    }
+
+    // Возвращает 0, если попытка разрешена, иначе - через сколько секунд можно повторить
+    public long tryAcquire(String username, String clientIp) {
+        long now = nanoClock.getAsLong();
+        if (clientIp != null) {
+            long wait = ipBuckets.get(clientIp, key -> new TokenBucket(now)).tryAcquire(now, ipLimit);
+            if (wait > 0) {
+                ipRejections.increment();
+                return toRetryAfterSeconds(wait);
+            }
+        }
+        if (username != null) {
+            String key = username.toLowerCase(Locale.ROOT);
+            long wait = usernameBuckets.get(key, k -> new TokenBucket(now)).tryAcquire(now, usernameLimit);
+            if (wait > 0) {
+                usernameRejections.increment();
+                return toRetryAfterSeconds(wait);
+            }
+        }
+        return 0;
+    }
+
+    long trackedKeys() {
+        usernameBuckets.cleanUp();
+        ipBuckets.cleanUp();
+        return usernameBuckets.estimatedSize() + ipBuckets.estimatedSize();
+    }
+
+    // Корзина, простаивающая дольше времени полного восстановления, снова полная,
+    // поэтому её вытеснение ничего не меняет
+    private static Cache<String, TokenBucket> newBucketCache(Limit limit, long maxKeys) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(limit.capacity * limit.intervalNanos))
+                .build();
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+    }
+
+    record Limit(int capacity, long intervalNanos) {
+        static Limit perMinute(int capacity, int perMinute) {
+            return new Limit(capacity, TimeUnit.MINUTES.toNanos(1) / perMinute);
+        }
+    }
+
+    // Token bucket в форме GCRA: состояние - одно "теоретическое время прихода",
+    // обновляемое CAS без блокировок
+    static final class TokenBucket {
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long now) {
+            this.theoreticalArrival = new AtomicLong(now);
+        }
+
+        // 0 - токен получен, иначе сколько наносекунд ждать следующего
+        long tryAcquire(long now, Limit limit) {
+            long burst = limit.capacity * limit.intervalNanos;
+            while (true) {
+                long current = theoreticalArrival.get();
+                long next = Math.max(current, now) + limit.intervalNanos;
+                long excess = next - now - burst;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
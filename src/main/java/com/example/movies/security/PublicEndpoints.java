@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+// Таблица публичных маршрутов. Матчеры компилируются один раз и используются
+// и в правилах SecurityConfig, и в JwtAuthenticationFilter.
+public final class PublicEndpoints {
+
+    // Доступны без аутентификации
+    public static final RequestMatcher[] PERMIT_ALL = {
+            AntPathRequestMatcher.antMatcher("/auth/**"),
+            AntPathRequestMatcher.antMatcher("/api/auth/**"),
+            AntPathRequestMatcher.antMatcher("/api/news/**"),
+            AntPathRequestMatcher.antMatcher("/api/seed/**"),
+            AntPathRequestMatcher.antMatcher("/swagger-ui/**"),
+            AntPathRequestMatcher.antMatcher("/v3/api-docs/**")
+    };
+
+    // Подмножество PERMIT_ALL, обработчики которого не используют текущего пользователя:
+    // для них фильтр не разбирает токен и не загружает пользователя.
+    // Изменяющие запросы к /api/news берут автора из Principal, поэтому сюда не входят.
+    private static final RequestMatcher SKIP_AUTHENTICATION = new OrRequestMatcher(
+            AntPathRequestMatcher.antMatcher("/auth/**"),
+            AntPathRequestMatcher.antMatcher(HttpMethod.GET, "/api/news/**"),
+            AntPathRequestMatcher.antMatcher("/swagger-ui/**"),
+            AntPathRequestMatcher.antMatcher("/v3/api-docs/**")
+    );
+
+    private PublicEndpoints() {
+    }
+
+    public static boolean skipsAuthentication(HttpServletRequest request) {
+        return SKIP_AUTHENTICATION.matches(request);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.Map;
+
+// Фиксированные роли приложения, сведённые к битам. Маска ролей считается один раз
+// при создании principal, дальше проверка роли - одна битовая операция.
+// Роли, которых нет в таблице, бита не получают и в проверках не участвуют.
+public final class RoleRegistry {
+
+    public static final int ADMIN = 1;
+    public static final int TEACHER = 1 << 1;
+    public static final int STUDENT = 1 << 2;
+    public static final int USER = 1 << 3;
+
+    private static final Map<String, Integer> BITS = Map.of(
+            "ROLE_ADMIN", ADMIN,
+            "ROLE_TEACHER", TEACHER,
+            "ROLE_STUDENT", STUDENT,
+            "ROLE_USER", USER
+    );
+
+    private RoleRegistry() {
+    }
+
+    public static int bit(String roleName) {
+        Integer bit = BITS.get(roleName);
+        return bit != null ? bit : 0;
+    }
+
+    public static int maskOf(Collection<? extends GrantedAuthority> authorities) {
+        int mask = 0;
+        for (GrantedAuthority authority : authorities) {
+            mask |= bit(authority.getAuthority());
+        }
+        return mask;
+    }
+
+    // Роли пользователя загружаются вместе с ним (EAGER), дополнительных запросов нет
+    public static int maskOf(User user) {
+        int mask = 0;
+        for (Role role : user.getRoles()) {
+            mask |= bit(role.getName());
+        }
+        return mask;
+    }
+
+    public static boolean has(int mask, int role) {
+        return (mask & role) != 0;
+    }
+}
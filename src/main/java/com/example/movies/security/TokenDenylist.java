@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import com.example.movies.model.RevokedToken;
+import com.example.movies.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Чёрный список отдельных access-токенов по jti. В памяти держится только до истечения
+// токена, новые записи других экземпляров подтягиваются инкрементально по revokedAt.
+@Component
+public class TokenDenylist {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+
+    // Запас на транзакции, закоммиченные позже, чем их revokedAt
+    private static final long OVERLAP_SECONDS = 30;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    // jti -> время истечения токена в миллисекундах
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastSync;
+
+    public TokenDenylist(RevokedTokenRepository revokedTokenRepository) {
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        LocalDateTime now = LocalDateTime.now();
+        for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(now)) {
+            put(token);
+        }
+        lastSync = now;
+        logger.info("Loaded {} revoked tokens", revoked.size());
+    }
+
+    public boolean isRevoked(String jti) {
+        return jti != null && revoked.containsKey(jti);
+    }
+
+    public void revoke(String jti, Long userId, Date expiresAt) {
+        if (jti == null || expiresAt == null) {
+            return;
+        }
+        LocalDateTime expiry = LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault());
+        revokedTokenRepository.save(new RevokedToken(jti, userId, expiry, LocalDateTime.now()));
+        revoked.put(jti, expiresAt.getTime());
+    }
+
+    @Scheduled(fixedDelayString = "${security.token-revocation.refresh-ms:10000}")
+    void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        for (RevokedToken token : revokedTokenRepository.findByRevokedAtAfter(lastSync.minusSeconds(OVERLAP_SECONDS))) {
+            put(token);
+        }
+        lastSync = now;
+        long nowMillis = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt < nowMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${security.token-revocation.purge-ms:600000}")
+    void purgeExpired() {
+        int removed = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            logger.debug("Purged {} expired revoked tokens", removed);
+        }
+    }
+
+    private void put(RevokedToken token) {
+        long expiresAt = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (expiresAt > System.currentTimeMillis()) {
+            revoked.put(token.getJti(), expiresAt);
+        }
+    }
+}
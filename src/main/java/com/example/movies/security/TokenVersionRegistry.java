@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.security;
+
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Текущие версии токенов пользователей. Хранятся только ненулевые версии,
+// поэтому отсутствие записи означает версию 0. Изменения, сделанные другими экземплярами,
+// подтягиваются периодически по tokensRevokedAt.
+@Component
+public class TokenVersionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionRegistry.class);
+
+    // Запас на транзакции, закоммиченные позже, чем их tokensRevokedAt
+    private static final long OVERLAP_SECONDS = 30;
+
+    private final UserRepository userRepository;
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+    private volatile LocalDateTime lastSync;
+
+    public TokenVersionRegistry(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : userRepository.findTokenVersions()) {
+            versions.put((Long) row[0], (Integer) row[1]);
+        }
+        lastSync = now;
+        logger.info("Loaded {} token versions", versions.size());
+    }
+
+    @Scheduled(fixedDelayString = "${security.token-revocation.refresh-ms:10000}")
+    void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        int changed = 0;
+        for (Object[] row : userRepository.findTokenVersionsChangedSince(lastSync.minusSeconds(OVERLAP_SECONDS))) {
+            // Версии только растут, поэтому повторное чтение той же строки безопасно
+            versions.merge((Long) row[0], (Integer) row[1], Math::max);
+            changed++;
+        }
+        lastSync = now;
+        if (changed > 0) {
+            logger.debug("Refreshed {} token versions", changed);
+        }
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        Integer current = versions.get(userId);
+        return tokenVersion >= (current != null ? current : 0);
+    }
+
+    // Инвалидирует все ранее выданные токены пользователя. Сохранение сущности - на вызывающем.
+    // Версия в памяти меняется только после коммита: при откате этот экземпляр иначе отклонял бы
+    // токены, действующие по БД, а refresh не понижает версии
+    public void bump(User user) {
+        int next = user.getTokenVersion() + 1;
+        user.setTokenVersion(next);
+        user.setTokensRevokedAt(LocalDateTime.now());
+        Long userId = user.getId();
+        if (userId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.merge(userId, next, Math::max);
+                }
+            });
+        } else {
+            versions.merge(userId, next, Math::max);
+        }
+    }
+}
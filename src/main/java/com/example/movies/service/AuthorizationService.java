@@ -0,0 +1,77 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.security.RoleRegistry;
+import com.example.movies.security.UserPrincipal;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+// Единая точка проверки ролей для сервисов и контроллеров. Роли задаются битами
+// RoleRegistry; для principal приложения маска уже посчитана, проверка без обхода коллекций.
+@Service
+public class AuthorizationService {
+
+    private final UserRepository userRepository;
+
+    public AuthorizationService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public boolean hasRole(Authentication authentication, int role) {
+        if (authentication == null) {
+            return false;
+        }
+        if (authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.hasRole(role);
+        }
+        // Principal не из нашего фильтра (например, в тестах) - считаем по authorities
+        return RoleRegistry.has(RoleRegistry.maskOf(authentication.getAuthorities()), role);
+    }
+
+    public boolean currentUserHasRole(int role) {
+        return hasRole(SecurityContextHolder.getContext().getAuthentication(), role);
+    }
+
+    // id текущего пользователя; null, если principal не из нашего фильтра
+    public Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+        return null;
+    }
+
+    public boolean hasRole(User user, int role) {
+        return user != null && RoleRegistry.has(RoleRegistry.maskOf(user), role);
+    }
+
+    // Роль пользователя, который ещё не загружен: один запрос по ключу
+    public boolean userHasRole(Long userId, String roleName) {
+        return userId != null && userRepository.hasRole(userId, roleName);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.dto.RosterUpdateResultDTO;
+import com.example.movies.exception.ResourceNotFoundException;
+import com.example.movies.repository.CourseRosterRepository;
+import com.example.movies.repository.CourseRosterRepository.DiffRow;
+import com.example.movies.repository.CourseRosterRepository.SeatState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+// Массовое изменение состава курса за постоянное число запросов: блокировка строки курса,
+// один запрос разницы с текущим составом и по одному оператору на каждую таблицу связей.
+// Места считаются по тем же правилам, что и при записи по одному: кто не поместился - в очередь.
+@Service
+public class CourseRosterService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourseRosterService.class);
+
+    // ADD - дописать студентов, REMOVE - отчислить (или убрать из очереди),
+    // REPLACE - состав становится ровно запрошенным списком
+    public enum RosterMode { ADD, REMOVE, REPLACE }
+
+    private final CourseRosterRepository rosterRepository;
+    private final CourseService courseService;
+    private final NotificationService notificationService;
+    private final int maxStudents;
+
+    public CourseRosterService(CourseRosterRepository rosterRepository,
+                               CourseService courseService,
+                               NotificationService notificationService,
+                               @Value("${courses.roster.max-students:5000}") int maxStudents) {
+        this.rosterRepository = rosterRepository;
+        this.courseService = courseService;
+        this.notificationService = notificationService;
+        this.maxStudents = maxStudents;
+    }
+
+    public RosterMode parseMode(String mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode is required: ADD, REMOVE or REPLACE");
+        }
+        try {
+            return RosterMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown mode: " + mode + ", expected ADD, REMOVE or REPLACE");
+        }
+    }
+
+    @Transactional
+    public RosterUpdateResultDTO updateRoster(Long courseId, RosterMode mode, List<Long> studentIds) {
+        if (studentIds == null || studentIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("studentIds must be a list of ids");
+        }
+        if (studentIds.size() > maxStudents) {
+            throw new IllegalArgumentException("Too many students in one request, max " + maxStudents);
+        }
+
+        SeatState seats = rosterRepository.lockCourse(courseId)
+                .orElseThrow(() -> new ResourceNotFoundException("Course not found"));
+        List<DiffRow> diff = rosterRepository.diff(courseId, studentIds, mode == RosterMode.REPLACE);
+
+        RosterUpdateResultDTO result = new RosterUpdateResultDTO();
+        List<Long> toAdd = new ArrayList<>();
+        List<Long> leaveWaitlist = new ArrayList<>();
+        Set<Long> alreadyWaitlisted = new HashSet<>();
+        for (DiffRow row : diff) {
+            if (mode == RosterMode.REMOVE) {
+                if (row.enrolled()) {
+                    result.getRemoved().add(row.studentId());
+                } else if (row.waitlisted()) {
+                    leaveWaitlist.add(row.studentId());
+                }
+            } else if (!row.requested()) {
+                // Только при замене: студент курса, которого нет в новом списке
+                if (row.enrolled()) {
+                    result.getRemoved().add(row.studentId());
+                }
+            } else if (!row.enrolled()) {
+                if (!row.student()) {
+                    result.getInvalid().add(row.studentId());
+                } else {
+                    toAdd.add(row.studentId());
+                    if (row.waitlisted()) {
+                        alreadyWaitlisted.add(row.studentId());
+                    }
+                }
+            }
+        }
+
+        int removed = rosterRepository.deleteEnrollments(courseId, result.getRemoved());
+        int enrolled = Math.max(seats.enrolledCount() - removed, 0);
+        int free = seats.capacity() == null ? toAdd.size() : Math.max(seats.capacity() - enrolled, 0);
+        List<Long> admitted = toAdd.subList(0, Math.min(free, toAdd.size()));
+        List<Long> overflow = toAdd.subList(admitted.size(), toAdd.size());
+
+        int inserted = rosterRepository.insertEnrollments(courseId, admitted);
+        rosterRepository.adjustEnrolledCount(courseId, inserted - removed);
+        // Уже стоящие в очереди остаются на своих местах: в waitlisted и в письма попадают только новые
+        List<Long> newlyWaitlisted = overflow.stream().filter(id -> !alreadyWaitlisted.contains(id)).toList();
+        rosterRepository.insertWaitlist(courseId, newlyWaitlisted);
+        result.getAdded().addAll(admitted);
+        result.getWaitlisted().addAll(newlyWaitlisted);
+
+        // Получившие место больше не ждут в очереди
+        for (Long studentId : admitted) {
+            if (alreadyWaitlisted.contains(studentId)) {
+                leaveWaitlist.add(studentId);
+            }
+        }
+        rosterRepository.deleteWaitlist(courseId, leaveWaitlist);
+
+        // При замене состав задан явно, освободившиеся места очередь не занимает
+        if (mode == RosterMode.REMOVE && removed > 0) {
+            result.getPromoted().addAll(courseService.fillFromWaitlist(courseId));
+        }
+        logger.info("Roster of course {} updated ({}): {} added, {} removed, {} waitlisted, {} promoted, {} invalid",
+                courseId, mode, result.getAdded().size(), result.getRemoved().size(),
+                result.getWaitlisted().size(), result.getPromoted().size(), result.getInvalid().size());
+
+        notifyStudents(seats.title(), result);
+        return result;
+    }
+
+    // Письма уходят после коммита, по одной задаче в очереди на группу студентов
+    private void notifyStudents(String courseTitle, RosterUpdateResultDTO result) {
+        List<Long> enrolled = new ArrayList<>(result.getAdded());
+        enrolled.addAll(result.getPromoted());
+        notificationService.notifyUsers(enrolled, "Зачисление на курс",
+                String.format("Вы были зачислены на курс \"%s\"", courseTitle));
+        notificationService.notifyUsers(result.getWaitlisted(), "Лист ожидания",
+                String.format("Курс \"%s\" заполнен, вы добавлены в очередь", courseTitle));
+        notificationService.notifyUsers(result.getRemoved(), "Отчисление с курса",
+                String.format("Вы были отчислены с курса \"%s\"", courseTitle));
+    }
+}
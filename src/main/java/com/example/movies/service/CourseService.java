@@ -23,38 +23,124 @@
  */
 package com.example.movies.service;
 
+import com.example.movies.dto.CourseSummaryDTO;
 import com.example.movies.exception.ResourceNotFoundException;
 import com.example.movies.model.Course;
 import com.example.movies.model.User;
-import com.example.movies.model.Role;
 import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.CourseRosterRepository;
+import com.example.movies.repository.CourseSearchRepository;
+import com.example.movies.repository.CourseWaitlistRepository;
+import com.example.movies.repository.RowEstimateRepository;
 import com.example.movies.repository.UserRepository;
+import com.example.movies.security.RoleRegistry;
+import com.example.movies.util.CountMode;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.stream.Collectors;
 
 @Service
 public class CourseService {
     private final CourseRepository courseRepository;
     private final UserRepository userRepository;
+    private final RowEstimateRepository rowEstimateRepository;
+    private final AuthorizationService authorizationService;
+    private final CourseWaitlistRepository waitlistRepository;
+    private final CourseSearchRepository courseSearchRepository;
+    private final CourseRosterRepository rosterRepository;
+    private final EntityManager entityManager;
     private static final Logger logger = LoggerFactory.getLogger(CourseService.class);
 
     @Autowired
-    public CourseService(CourseRepository courseRepository, UserRepository userRepository) {
+    public CourseService(CourseRepository courseRepository, UserRepository userRepository,
+                         RowEstimateRepository rowEstimateRepository,
+                         AuthorizationService authorizationService,
+                         CourseWaitlistRepository waitlistRepository,
+                         CourseSearchRepository courseSearchRepository,
+                         CourseRosterRepository rosterRepository,
+                         EntityManager entityManager) {
         this.courseRepository = courseRepository;
         this.userRepository = userRepository;
+        this.rowEstimateRepository = rowEstimateRepository;
+        this.authorizationService = authorizationService;
+        this.waitlistRepository = waitlistRepository;
+        this.courseSearchRepository = courseSearchRepository;
+        this.rosterRepository = rosterRepository;
+        this.entityManager = entityManager;
+    }
+
+    public enum EnrollmentStatus { ENROLLED, WAITLISTED }
+
+    // waitlistPosition - номер в очереди (с 1) для WAITLISTED, 0 для ENROLLED. Считается по уже
+    // закоммиченным записям очереди, поэтому при одновременных запросах может быть занижен;
+    // сам порядок очереди (по id) точный
+    public record EnrollmentResult(EnrollmentStatus status, long waitlistPosition) {
+    }
+
+    // removed - студент был записан или стоял в очереди; promoted - кто занял освободившиеся места
+    public record RemovalResult(boolean removed, List<Long> promoted) {
     }
 
     public List<Course> getAllCourses() {
         return courseRepository.findAll();
     }
 
+    // Курсы по фильтрам постранично; при NONE возвращается Slice без COUNT
+    public Slice<Course> findCourses(String title, String description, String teacherName,
+                                     int page, int size, CountMode count) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        return switch (count) {
+            case EXACT -> courseRepository.findByFilters(title, description, teacherName, pageable);
+            case NONE -> courseRepository.findByFiltersAsSlice(title, description, teacherName, pageable);
+            case APPROX -> CountMode.approximatePage(
+                    courseRepository.findByFiltersAsSlice(title, description, teacherName, pageable),
+                    rowEstimateRepository.estimateCourses(title, description, teacherName));
+        };
+    }
+
+    // Каталог курсов: преподаватель и число студентов без загрузки самих студентов
+    public Slice<CourseSummaryDTO> findCatalog(String title, String description, String teacherName,
+                                               int page, int size, CountMode count) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by("id"));
+        return switch (count) {
+            case EXACT -> courseRepository.findSummaries(title, description, teacherName, pageable);
+            case NONE -> courseRepository.findSummariesAsSlice(title, description, teacherName, pageable);
+            case APPROX -> CountMode.approximatePage(
+                    courseRepository.findSummariesAsSlice(title, description, teacherName, pageable),
+                    rowEstimateRepository.estimateCatalog(title, description, teacherName));
+        };
+    }
+
+    // Поиск по тексту (название и описание) и по имени преподавателя; без COUNT, size + 1 строк
+    // определяют hasNext. Пустые фильтры не применяются
+    public Slice<CourseSummaryDTO> searchCourses(String query, String teacherName, String sort, int page, int size) {
+        if (!CourseSearchRepository.SORT_OPTIONS.contains(sort)) {
+            throw new IllegalArgumentException("Unknown sort: " + sort + ", expected one of "
+                    + CourseSearchRepository.SORT_OPTIONS);
+        }
+        Pageable pageable = PageRequest.of(page, size);
+        List<CourseSummaryDTO> rows = courseSearchRepository.search(blankToNull(query), blankToNull(teacherName),
+                sort, size + 1, pageable.getOffset());
+        boolean hasNext = rows.size() > size;
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, pageable, hasNext);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
     public Course getCourseById(Long id) {
         return courseRepository.findById(id).orElse(null);
     }
@@ -63,11 +149,21 @@ public class CourseService {
         return courseRepository.save(course);
     }
 
+    // При увеличении вместимости свободные места сразу занимает очередь
+    @Transactional
     public Course updateCourse(Long id, Course courseDetails) {
         Course course = getCourseById(id);
         course.setTitle(courseDetails.getTitle());
         course.setDescription(courseDetails.getDescription());
-        return courseRepository.save(course);
+        course.setCapacity(courseDetails.getCapacity());
+        Course saved = courseRepository.saveAndFlush(course);
+        List<Long> promoted = fillFromWaitlist(id);
+        if (!promoted.isEmpty()) {
+            logger.info("Promoted {} students from waitlist of course {}", promoted.size(), id);
+            // Счётчик и список студентов изменены в обход сущности
+            entityManager.refresh(saved);
+        }
+        return saved;
     }
 
     public void deleteCourse(Long id) {
@@ -75,24 +171,53 @@ public class CourseService {
         courseRepository.delete(course);
     }
 
+    // Запись без проверки роли (для администратора), с учётом вместимости; false - студент уже записан
     @Transactional
-    public Course addStudentToCourse(Long courseId, Long studentId) {
-        Course course = getCourseById(courseId);
-        User student = userRepository.findById(studentId)
-                .orElseThrow(() -> new NoSuchElementException("User not found with id: " + studentId));
-        
-        course.getStudents().add(student);
-        return courseRepository.save(course);
+    public boolean addStudentToCourse(Long courseId, Long studentId) {
+        requireCourse(courseId);
+        if (!userRepository.existsById(studentId)) {
+            throw new ResourceNotFoundException("Student not found");
+        }
+        if (courseRepository.claimSeat(courseId) == 0) {
+            throw new IllegalArgumentException("Course is full");
+        }
+        if (courseRepository.insertEnrollment(courseId, studentId) == 0) {
+            courseRepository.releaseSeat(courseId);
+            return false;
+        }
+        return true;
     }
 
+    // Отчисляет студента или убирает его из очереди; освободившееся место сразу получает очередь
     @Transactional
-    public Course removeStudentFromCourse(Long courseId, Long studentId) {
-        Course course = getCourseById(courseId);
-        User student = userRepository.findById(studentId)
-                .orElseThrow(() -> new NoSuchElementException("User not found with id: " + studentId));
-        
-        course.getStudents().remove(student);
-        return courseRepository.save(course);
+    public RemovalResult removeStudentFromCourse(Long courseId, Long studentId) {
+        if (courseRepository.deleteEnrollment(courseId, studentId) == 0) {
+            return new RemovalResult(waitlistRepository.deleteEntry(courseId, studentId) > 0, List.of());
+        }
+        courseRepository.releaseSeat(courseId);
+        return new RemovalResult(true, fillFromWaitlist(courseId));
+    }
+
+    // Переводит студентов из очереди, пока есть свободные места; возвращает их id
+    @Transactional
+    public List<Long> fillFromWaitlist(Long courseId) {
+        List<Long> promoted = new ArrayList<>();
+        while (courseRepository.claimSeat(courseId) == 1) {
+            List<Object[]> head = waitlistRepository.findHead(courseId);
+            if (head.isEmpty()) {
+                courseRepository.releaseSeat(courseId);
+                break;
+            }
+            Long entryId = ((Number) head.get(0)[0]).longValue();
+            Long studentId = ((Number) head.get(0)[1]).longValue();
+            waitlistRepository.deleteEntry(entryId);
+            if (courseRepository.insertEnrollment(courseId, studentId) == 1) {
+                promoted.add(studentId);
+            } else {
+                courseRepository.releaseSeat(courseId);
+            }
+        }
+        return promoted;
     }
 
     @Transactional
@@ -105,56 +230,68 @@ public class CourseService {
         return courseRepository.save(course);
     }
 
+    // Запись на курс за постоянное число запросов, независимо от размера курса. Место занимается
+    // условным UPDATE счётчика (claimSeat); если мест нет, студент встаёт в конец очереди.
+    // Записанный студент уходит из очереди курса, если стоял в ней.
+    // Исключение откатывает транзакцию вместе с занятым местом
     @Transactional
-    public void enrollStudent(Long courseId, Long studentId) {
+    public EnrollmentResult enrollStudent(Long courseId, Long studentId) {
         logger.info("Enrolling student {} to course {}", studentId, courseId);
-        
-        Course course = courseRepository.findById(courseId)
-                .orElseThrow(() -> {
-                    logger.error("Course not found: {}", courseId);
-                    return new ResourceNotFoundException("Course not found");
-                });
-        
-        User student = userRepository.findById(studentId)
-                .orElseThrow(() -> {
-                    logger.error("Student not found: {}", studentId);
-                    return new ResourceNotFoundException("Student not found");
-                });
-        
-        // Log user details and roles
-        logger.info("User details - ID: {}, Username: {}, Roles: {}", 
-                   student.getId(), 
-                   student.getUsername(),
-                   student.getRoles().stream()
-                          .map(Role::getName)
-                          .collect(Collectors.joining(", ")));
-        
-        // Check if user is a student
-        boolean isStudent = student.getRoles().stream()
-                .anyMatch(r -> r.getName().equalsIgnoreCase("ROLE_STUDENT"));
-        
-        if (!isStudent) {
-            logger.error("User {} is not a student. Current roles: {}", 
-                        student.getUsername(),
-                        student.getRoles().stream()
-                               .map(Role::getName)
-                               .collect(Collectors.joining(", ")));
+
+        if (!authorizationService.userHasRole(studentId, "ROLE_STUDENT")) {
+            if (!userRepository.existsById(studentId)) {
+                logger.error("Student not found: {}", studentId);
+                throw new ResourceNotFoundException("Student not found");
+            }
+            logger.error("User {} is not a student", studentId);
             throw new IllegalArgumentException("User is not a student");
         }
-        
-        // Check if student is already enrolled
-        if (course.getStudents().contains(student)) {
+
+        if (courseRepository.claimSeat(courseId) == 1) {
+            return insertEnrollment(courseId, studentId);
+        }
+
+        // Не совпавший UPDATE строку не блокирует: отчисление могло освободить место и уже проверить
+        // очередь, не видя нашей незакоммиченной записи. Под блокировкой курса место проверяется заново,
+        // и в очередь студент встаёт только если его нет
+        if (rosterRepository.lockCourse(courseId).isEmpty()) {
+            logger.error("Course not found: {}", courseId);
+            throw new ResourceNotFoundException("Course not found");
+        }
+        if (courseRepository.claimSeat(courseId) == 1) {
+            return insertEnrollment(courseId, studentId);
+        }
+        if (courseRepository.isEnrolled(courseId, studentId)) {
             logger.error("Student {} is already enrolled in course {}", studentId, courseId);
             throw new IllegalArgumentException("Student is already enrolled in this course");
         }
-        
-        try {
-            course.getStudents().add(student);
-            courseRepository.save(course);
-            logger.info("Successfully enrolled student {} to course {}", studentId, courseId);
-        } catch (Exception e) {
-            logger.error("Error saving course enrollment: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to save course enrollment", e);
+        if (waitlistRepository.insertEntry(courseId, studentId) == 0) {
+            throw new IllegalArgumentException("Student is already on the waitlist for this course");
+        }
+        long position = waitlistRepository.findPosition(courseId, studentId);
+        logger.info("Course {} is full, student {} waitlisted at position {}", courseId, studentId, position);
+        return new EnrollmentResult(EnrollmentStatus.WAITLISTED, position);
+    }
+
+    private EnrollmentResult insertEnrollment(Long courseId, Long studentId) {
+        if (courseRepository.insertEnrollment(courseId, studentId) == 0) {
+            logger.error("Student {} is already enrolled in course {}", studentId, courseId);
+            throw new IllegalArgumentException("Student is already enrolled in this course");
+        }
+        // Иначе fillFromWaitlist позже снова достанет его из очереди
+        waitlistRepository.deleteEntry(courseId, studentId);
+        logger.info("Successfully enrolled student {} to course {}", studentId, courseId);
+        return new EnrollmentResult(EnrollmentStatus.ENROLLED, 0);
+    }
+
+    public boolean isTeacherOf(Long courseId, Long userId) {
+        return userId != null && courseRepository.existsByIdAndTeacher_Id(courseId, userId);
+    }
+
+    private void requireCourse(Long courseId) {
+        if (!courseRepository.existsById(courseId)) {
+            logger.error("Course not found: {}", courseId);
+            throw new ResourceNotFoundException("Course not found");
         }
     }
 
@@ -166,7 +303,7 @@ public class CourseService {
                 .orElseThrow(() -> new ResourceNotFoundException("Teacher not found"));
         
         // Check if user is a teacher
-        if (!teacher.getRoles().stream().anyMatch(r -> r.getName().equals("ROLE_TEACHER"))) {
+        if (!authorizationService.hasRole(teacher, RoleRegistry.TEACHER)) {
             throw new IllegalArgumentException("User is not a teacher");
         }
         
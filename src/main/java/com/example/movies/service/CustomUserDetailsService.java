@@ -25,28 +25,62 @@ package com.example.movies.service;
 
 import com.example.movies.model.User;
 import com.example.movies.repository.UserRepository;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.example.movies.security.UserPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.stream.Collectors;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
-    @Autowired
-    private UserRepository userRepository;
+    private final UserRepository userRepository;
+
+    // Кэш неизменяемых principal'ов: снимает запрос пользователя и ролей с каждого запроса.
+    // Статистика попаданий/промахов доступна в /actuator/metrics/cache.gets?tag=cache:userDetails
+    private final Cache<String, UserPrincipal> cache;
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${security.user-cache.max-size:10000}") long maxSize,
+                                    @Value("${security.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        return cache.get(username, this::loadPrincipal);
+    }
+
+    // Вызывается при любом изменении пользователя или его ролей
+    public void evict(String username) {
+        if (username != null) {
+            cache.invalidate(username);
+        }
+    }
+
+    private UserPrincipal loadPrincipal(String username) {
         User userEntity = userRepository.findByUsername(username);
         if (userEntity == null) {
             throw new UsernameNotFoundException("User not found");
         }
 
         // Конвертируем роли в GrantedAuthority
-        return new org.springframework.security.core.userdetails.User(
+        return new UserPrincipal(
+                userEntity.getId(),
                 userEntity.getUsername(),
                 userEntity.getPassword(),
                 userEntity.getRoles().stream()
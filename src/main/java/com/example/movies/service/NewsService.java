@@ -25,7 +25,13 @@ package com.example.movies.service;
 
 import com.example.movies.model.News;
 import com.example.movies.repository.NewsRepository;
+import com.example.movies.repository.RowEstimateRepository;
+import com.example.movies.util.CountMode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -35,16 +41,29 @@ import java.util.Optional;
 public class NewsService {
 
     private final NewsRepository newsRepository;
+    private final RowEstimateRepository rowEstimateRepository;
 
     @Autowired
-    public NewsService(NewsRepository newsRepository) {
+    public NewsService(NewsRepository newsRepository, RowEstimateRepository rowEstimateRepository) {
         this.newsRepository = newsRepository;
+        this.rowEstimateRepository = rowEstimateRepository;
     }
 
     public List<News> findAll() {
         return newsRepository.findAll();
     }
 
+    // Новости по фильтрам, свежие первыми; при NONE возвращается Slice без COUNT
+    public Slice<News> findNews(String title, String likeTitle, int page, int size, CountMode count) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+        return switch (count) {
+            case EXACT -> newsRepository.findByFilters(title, likeTitle, pageable);
+            case NONE -> newsRepository.findByFiltersAsSlice(title, likeTitle, pageable);
+            case APPROX -> CountMode.approximatePage(newsRepository.findByFiltersAsSlice(title, likeTitle, pageable),
+                    rowEstimateRepository.estimateNews(title, likeTitle));
+        };
+    }
+
     public Optional<News> findById(Long id) {
         return newsRepository.findById(id);
     }
@@ -24,43 +24,133 @@
 package com.example.movies.service;
 
 import com.example.movies.model.User;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.example.movies.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Письма-уведомления отправляются в фоне: запрос только ставит задачу в ограниченную очередь.
+// Внутри транзакции задача ставится после коммита, чтобы не сообщать об откатившихся изменениях.
+// При переполненной очереди уведомление теряется (счётчик notifications.mail.dropped).
 @Service
 public class NotificationService {
     
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
     
-    @Autowired
-    private JavaMailSender mailSender;
-    
+    private final JavaMailSender mailSender;
+    private final UserRepository userRepository;
+    private final ThreadPoolExecutor executor;
+    private final Counter droppedCounter;
+
+    public NotificationService(JavaMailSender mailSender,
+                               UserRepository userRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${notifications.mail.threads:1}") int threads,
+                               @Value("${notifications.mail.queue-capacity:10000}") int queueCapacity) {
+        this.mailSender = mailSender;
+        this.userRepository = userRepository;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "notifications-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.droppedCounter = Counter.builder("notifications.mail.dropped")
+                .description("Уведомления, отброшенные из-за переполненной очереди")
+                .register(meterRegistry);
+        Gauge.builder("notifications.mail.queue", executor, e -> e.getQueue().size())
+                .description("Задачи отправки уведомлений в очереди")
+                .register(meterRegistry);
+    }
+
     public void createNotification(User user, String title, String message) {
-        if (user.getEmail() == null || user.getEmail().isEmpty()) {
-            logger.warn("Cannot send email: User {} has no email address", user.getUsername());
+        String email = user.getEmail();
+        String username = user.getUsername();
+        enqueue(() -> send(username, email, title, message));
+    }
+
+    // Одно уведомление многим пользователям: адреса читаются одним запросом уже в фоновом потоке
+    public void notifyUsers(Collection<Long> userIds, String title, String message) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(userIds);
+        enqueue(() -> {
+            for (Object[] contact : userRepository.findContactsByIdIn(ids)) {
+                send((String) contact[0], (String) contact[1], title, message);
+            }
+        });
+    }
+
+    private void enqueue(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(task);
+                }
+            });
+        } else {
+            submit(task);
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            droppedCounter.increment();
+            logger.warn("Notification queue is full, notification dropped");
+        }
+    }
+
+    private void send(String username, String email, String title, String message) {
+        if (email == null || email.isEmpty()) {
+            logger.warn("Cannot send email: User {} has no email address", username);
             return;
         }
         
         try {
-            logger.info("Attempting to send email to {}", user.getEmail());
+            logger.info("Attempting to send email to {}", email);
             
-            SimpleMailMessage email = new SimpleMailMessage();
-            email.setTo(user.getEmail());
-            email.setSubject("Запись на курс");
-            email.setText(message);
+            SimpleMailMessage mail = new SimpleMailMessage();
+            mail.setTo(email);
+            mail.setSubject(title);
+            mail.setText(message);
             
-            mailSender.send(email);
-            logger.info("Email sent successfully to {}", user.getEmail());
+            mailSender.send(mail);
+            logger.info("Email sent successfully to {}", email);
         } catch (Exception e) {
-            logger.error("Failed to send email to {}: {}", user.getEmail(), e.getMessage());
+            logger.error("Failed to send email to {}: {}", email, e.getMessage());
             logger.error("Error details: {}", e.getClass().getName());
             if (e.getCause() != null) {
                 logger.error("Caused by: {}", e.getCause().getMessage());
             }
         }
     }
-} 
\ No newline at end of file
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
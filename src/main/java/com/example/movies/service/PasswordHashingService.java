@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.exception.PasswordHashingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Хеширование паролей на отдельном пуле размером с число ядер.
+// BCrypt не занимает все потоки Tomcat, а при переполнении очереди запрос сразу отклоняется.
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    // Отдельный пул для массового импорта, чтобы импорт не вытеснял вход и регистрацию из очереди
+    private final ThreadPoolExecutor bulkExecutor;
+    private final long retryAfterSeconds;
+    private final Timer hashingTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${security.password-hashing.threads:0}") int threads,
+                                  @Value("${security.password-hashing.queue-capacity:100}") int queueCapacity,
+                                  @Value("${security.password-hashing.retry-after-seconds:1}") long retryAfterSeconds,
+                                  @Value("${security.password-hashing.bulk-threads:0}") int bulkThreads) {
+        this.passwordEncoder = passwordEncoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // При заполненной очереди задачу выполняет вызывающий поток: параллельные импорты
+        // замедляются, но не отклоняются и не копят задачи без ограничения
+        int bulkPoolSize = bulkThreads > 0 ? bulkThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger bulkThreadNumber = new AtomicInteger();
+        this.bulkExecutor = new ThreadPoolExecutor(bulkPoolSize, bulkPoolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(bulkPoolSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-bulk-" + bulkThreadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.hashingTimer = Timer.builder("auth.password.hashing")
+                .description("Время хеширования/проверки пароля, включая ожидание в очереди")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("auth.password.hashing.rejected")
+                .description("Запросы, отклонённые из-за переполненной очереди")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Задачи хеширования в очереди")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+
+        logger.info("Password hashing pool: {} threads, queue capacity {}; bulk pool: {} threads",
+                poolSize, queueCapacity, bulkPoolSize);
+    }
+
+    public String encode(String rawPassword) {
+        return execute(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // Хеширует пароли пачкой: список делится на части по числу потоков массового пула
+    public List<String> encodeAll(List<String> rawPasswords) {
+        String[] encoded = new String[rawPasswords.size()];
+        int parts = Math.min(bulkExecutor.getMaximumPoolSize(), encoded.length);
+        List<Future<?>> futures = new ArrayList<>(parts);
+        for (int part = 0; part < parts; part++) {
+            int from = part * encoded.length / parts;
+            int to = (part + 1) * encoded.length / parts;
+            futures.add(bulkExecutor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    long start = System.nanoTime();
+                    encoded[i] = passwordEncoder.encode(rawPasswords.get(i));
+                    hashingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            await(future);
+        }
+        return Arrays.asList(encoded);
+    }
+
+    // Хеш устаревшего алгоритма или с меньшей стоимостью, чем текущая
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T execute(Callable<T> task) {
+        long start = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException(retryAfterSeconds);
+        }
+
+        try {
+            return await(future);
+        } finally {
+            hashingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        bulkExecutor.shutdown();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.model.RefreshToken;
+import com.example.movies.model.User;
+import com.example.movies.repository.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+
+// Ротируемые непрозрачные refresh-токены. В БД лежит только SHA-256 хеш с уникальным индексом,
+// поэтому обновление access-токена - это один поиск по индексу вместо проверки пароля через BCrypt.
+@Service
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final long refreshExpiration;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+                               @Value("${jwt.refresh-expiration}") long refreshExpiration) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.refreshExpiration = refreshExpiration;
+    }
+
+    // Результат ротации: пользователь и новый refresh-токен для того же устройства
+    public record Rotation(User user, String refreshToken) {}
+
+    // Выдаёт новый токен; предыдущий токен этого устройства отзывается
+    @Transactional
+    public String issue(User user, String deviceId) {
+        refreshTokenRepository.deleteByUserIdAndDeviceId(user.getId(), deviceId);
+        return create(user, deviceId);
+    }
+
+    // Обменивает refresh-токен на новый. Возвращает null, если токен неизвестен, истёк или уже использован.
+    @Transactional
+    public Rotation rotate(String rawToken) {
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(rawToken));
+        if (token == null) {
+            return null;
+        }
+        if (refreshTokenRepository.deleteTokenById(token.getId()) == 0) {
+            logger.warn("Refresh token for device {} was already used", token.getDeviceId());
+            return null;
+        }
+        if (token.getExpiresAt().isBefore(LocalDateTime.now())) {
+            return null;
+        }
+        User user = token.getUser();
+        return new Rotation(user, create(user, token.getDeviceId()));
+    }
+
+    // Выход с одного устройства
+    @Transactional
+    public boolean revoke(String rawToken) {
+        RefreshToken token = refreshTokenRepository.findByTokenHash(hash(rawToken));
+        if (token == null) {
+            return false;
+        }
+        refreshTokenRepository.deleteTokenById(token.getId());
+        return true;
+    }
+
+    @Transactional
+    public void revokeAll(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    private String create(User user, String deviceId) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(refreshExpiration));
+        refreshTokenRepository.save(new RefreshToken(user, deviceId, hash(rawToken), expiresAt));
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.exception.DuplicateUserException;
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+// Создание пользователей с опорой на уникальные ограничения users.username / users.email.
+// Фильтры Блума занятых имён и email позволяют для заведомо свободных значений
+// обойтись одним INSERT без предварительных проверок.
+@Service
+public class RegistrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegistrationService.class);
+
+    public static final String USERNAME_TAKEN = "Username is already taken!";
+    public static final String EMAIL_TAKEN = "Email is already in use!";
+
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    private final UserRepository userRepository;
+    private final RoleStatisticsService roleStatisticsService;
+    private final BloomFilter usernames;
+    private final BloomFilter emails;
+
+    public RegistrationService(UserRepository userRepository,
+                               RoleStatisticsService roleStatisticsService,
+                               @Value("${security.registration.bloom.expected-users:1000000}") long expectedUsers,
+                               @Value("${security.registration.bloom.fpp:0.01}") double fpp) {
+        this.userRepository = userRepository;
+        this.roleStatisticsService = roleStatisticsService;
+        this.usernames = new BloomFilter(expectedUsers, fpp);
+        this.emails = new BloomFilter(expectedUsers, fpp);
+    }
+
+    @PostConstruct
+    void load() {
+        long lastId = 0;
+        long loaded = 0;
+        List<Object[]> batch;
+        do {
+            batch = userRepository.findCredentialsAfter(lastId, PageRequest.ofSize(LOAD_BATCH_SIZE));
+            for (Object[] row : batch) {
+                lastId = (Long) row[0];
+                remember((String) row[1], (String) row[2]);
+            }
+            loaded += batch.size();
+        } while (batch.size() == LOAD_BATCH_SIZE);
+        logger.info("Loaded {} usernames/emails into registration Bloom filters ({} bits, {} hashes)",
+                loaded, usernames.bitSize(), usernames.hashCount());
+    }
+
+    // Бросает DuplicateUserException, если имя или email уже заняты. В БД идём только
+    // когда фильтр допускает, что значение занято; иначе проверять нечего.
+    // Имя и email служебного пользователя (UserDeletionService) заняты всегда.
+    public void checkAvailable(String username, String email) {
+        if (username != null && (UserDeletionService.TOMBSTONE_USERNAME.equals(username)
+                || usernames.mightContain(username) && userRepository.existsByUsername(username))) {
+            throw new DuplicateUserException(USERNAME_TAKEN);
+        }
+        if (email != null && (UserDeletionService.TOMBSTONE_EMAIL.equals(email)
+                || emails.mightContain(email) && userRepository.existsByEmail(email))) {
+            throw new DuplicateUserException(EMAIL_TAKEN);
+        }
+    }
+
+    // Один INSERT; гонки между параллельными регистрациями разрешает уникальный индекс
+    public User create(User user) {
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            String field = violatedField(e);
+            if (field == null) {
+                throw e;
+            }
+            remember(user.getUsername(), user.getEmail());
+            logger.warn("Insert of user {} rejected by unique constraint on {}", user.getUsername(), field);
+            throw new DuplicateUserException("email".equals(field) ? EMAIL_TAKEN : USERNAME_TAKEN);
+        }
+        remember(saved.getUsername(), saved.getEmail());
+        roleStatisticsService.invalidate();
+        return saved;
+    }
+
+    // Занятые имена/email из пачки. В БД уходят только значения, которые фильтр не отсеял
+    public Set<String> takenUsernames(Collection<String> candidates) {
+        return taken(candidates, UserDeletionService.TOMBSTONE_USERNAME, usernames, userRepository::findExistingUsernames);
+    }
+
+    public Set<String> takenEmails(Collection<String> candidates) {
+        return taken(candidates, UserDeletionService.TOMBSTONE_EMAIL, emails, userRepository::findExistingEmails);
+    }
+
+    private static Set<String> taken(Collection<String> candidates, String reserved, BloomFilter filter,
+                                     Function<Collection<String>, List<String>> lookup) {
+        List<String> suspects = candidates.stream().filter(filter::mightContain).toList();
+        Set<String> taken = suspects.isEmpty() ? new HashSet<>() : new HashSet<>(lookup.apply(suspects));
+        if (candidates.contains(reserved)) {
+            taken.add(reserved);
+        }
+        return taken;
+    }
+
+    // Для пользователей, созданных или переименованных в обход create
+    public void remember(String username, String email) {
+        if (username != null) {
+            usernames.put(username);
+        }
+        if (email != null) {
+            emails.put(email);
+        }
+    }
+
+    private static String violatedField(DataIntegrityViolationException e) {
+        String constraint = e.getCause() instanceof ConstraintViolationException cve ? cve.getConstraintName() : null;
+        String message = e.getMostSpecificCause().getMessage();
+        String text = (constraint != null ? constraint : "") + " " + (message != null ? message : "");
+        if (text.contains(User.UK_USERNAME) || text.contains("(username)")) {
+            return "username";
+        }
+        if (text.contains(User.UK_EMAIL) || text.contains("(email)")) {
+            return "email";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.dto.RoleStatsDTO;
+import com.example.movies.repository.RoleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Агрегированная статистика по ролям. Считается в БД и кэшируется; кэш сбрасывается
+// при создании и удалении пользователей, TTL покрывает изменения с других экземпляров.
+@Service
+public class RoleStatisticsService {
+
+    private final RoleRepository roleRepository;
+    private final Cache<Integer, List<RoleStatsDTO>> cache;
+
+    public RoleStatisticsService(RoleRepository roleRepository,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${statistics.roles.ttl-seconds:60}") long ttlSeconds) {
+        this.roleRepository = roleRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(64)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "roleStatistics");
+    }
+
+    // weeks - сколько последних недель (включая текущую) разбить по новым пользователям; 0 - без разбивки
+    public List<RoleStatsDTO> getStatistics(int weeks) {
+        return cache.get(weeks, this::load);
+    }
+
+    public void invalidate() {
+        cache.invalidateAll();
+    }
+
+    private List<RoleStatsDTO> load(int weeks) {
+        Map<Long, RoleStatsDTO> byId = new LinkedHashMap<>();
+        for (Object[] row : roleRepository.countUsersByRole()) {
+            Long id = ((Number) row[0]).longValue();
+            byId.put(id, new RoleStatsDTO(id, (String) row[1], ((Number) row[2]).longValue()));
+        }
+        if (weeks > 0) {
+            LocalDate firstWeek = LocalDate.now().with(DayOfWeek.MONDAY).minusWeeks(weeks - 1);
+            // Недели без регистраций тоже попадают в ответ, с нулём
+            for (RoleStatsDTO stats : byId.values()) {
+                for (int i = 0; i < weeks; i++) {
+                    stats.getNewUsersPerWeek().put(firstWeek.plusWeeks(i), 0L);
+                }
+            }
+            for (Object[] row : roleRepository.countNewUsersByRoleAndWeek(firstWeek.atStartOfDay())) {
+                RoleStatsDTO stats = byId.get(((Number) row[0]).longValue());
+                if (stats != null) {
+                    stats.getNewUsersPerWeek().put(((Date) row[1]).toLocalDate(), ((Number) row[2]).longValue());
+                }
+            }
+        }
+        return List.copyOf(new ArrayList<>(byId.values()));
+    }
+}
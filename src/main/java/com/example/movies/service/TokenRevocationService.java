@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.security.JwtUtils;
+import com.example.movies.security.TokenDenylist;
+import com.example.movies.security.TokenVersionRegistry;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Досрочный отзыв токенов: все токены пользователя через версию или один токен через jti
+@Service
+public class TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    private final UserRepository userRepository;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final TokenDenylist tokenDenylist;
+    private final RefreshTokenService refreshTokenService;
+    private final CustomUserDetailsService userDetailsService;
+    private final JwtUtils jwtUtils;
+
+    public TokenRevocationService(UserRepository userRepository,
+                                  TokenVersionRegistry tokenVersionRegistry,
+                                  TokenDenylist tokenDenylist,
+                                  RefreshTokenService refreshTokenService,
+                                  CustomUserDetailsService userDetailsService,
+                                  JwtUtils jwtUtils) {
+        this.userRepository = userRepository;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.tokenDenylist = tokenDenylist;
+        this.refreshTokenService = refreshTokenService;
+        this.userDetailsService = userDetailsService;
+        this.jwtUtils = jwtUtils;
+    }
+
+    // Выход на всех устройствах: access-токены со старой версией и все refresh-токены перестают действовать
+    @Transactional
+    public void revokeAll(User user) {
+        tokenVersionRegistry.bump(user);
+        userRepository.save(user);
+        refreshTokenService.revokeAll(user.getId());
+        userDetailsService.evict(user.getUsername());
+        logger.info("Revoked all tokens of user {}", user.getUsername());
+    }
+
+    // Отзывает один access-токен; возвращает false, если токен невалиден
+    public boolean revoke(String token) {
+        Claims claims = jwtUtils.getVerifiedClaims(token);
+        if (claims == null || claims.getId() == null) {
+            return false;
+        }
+        tokenDenylist.revoke(claims.getId(), jwtUtils.getUserId(claims), claims.getExpiration());
+        return true;
+    }
+}
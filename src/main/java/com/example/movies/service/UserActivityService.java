@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.repository.UserBulkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Отложенная запись времени входа и активности. Запросы только обновляют запись в памяти
+// (userId -> последние времена), раз в интервал всё накопленное уходит в БД пачками.
+// При падении теряется не больше одного интервала; при переполнении буфера новые
+// пользователи пропускаются до следующего сброса, уже известные продолжают обновляться.
+@Service
+public class UserActivityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserActivityService.class);
+
+    private record Activity(LocalDateTime lastLoginAt, LocalDateTime lastSeenAt) {
+
+        Activity merge(Activity other) {
+            return new Activity(latest(lastLoginAt, other.lastLoginAt), latest(lastSeenAt, other.lastSeenAt));
+        }
+
+        private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            return b == null || a.isAfter(b) ? a : b;
+        }
+    }
+
+    private final UserBulkRepository userBulkRepository;
+    private final Map<Long, Activity> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final int maxPending;
+    private final Counter droppedCounter;
+
+    public UserActivityService(UserBulkRepository userBulkRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${users.activity.batch-size:1000}") int batchSize,
+                               @Value("${users.activity.max-pending:100000}") int maxPending) {
+        this.userBulkRepository = userBulkRepository;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.droppedCounter = Counter.builder("users.activity.dropped")
+                .description("Обновления активности, пропущенные из-за переполненного буфера")
+                .register(meterRegistry);
+        Gauge.builder("users.activity.pending", pending, Map::size)
+                .description("Пользователи с несброшенной активностью")
+                .register(meterRegistry);
+    }
+
+    public void recordLogin(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        record(userId, new Activity(now, now));
+    }
+
+    public void recordSeen(Long userId) {
+        record(userId, new Activity(null, LocalDateTime.now()));
+    }
+
+    private void record(Long userId, Activity activity) {
+        if (userId == null) {
+            return;
+        }
+        // Размер проверяется без блокировки, поэтому буфер может немного превысить предел
+        if (pending.size() >= maxPending && !pending.containsKey(userId)) {
+            droppedCounter.increment();
+            return;
+        }
+        pending.merge(userId, activity, Activity::merge);
+    }
+
+    // Забирает накопленное и пишет пачками по batchSize строк; возвращает число обновлённых строк
+    @Scheduled(fixedDelayString = "${users.activity.flush-ms:30000}")
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        List<UserBulkRepository.ActivityRow> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Long userId : pending.keySet()) {
+            // remove атомарно забирает последнее значение; обновления после него попадут в следующий сброс
+            Activity activity = pending.remove(userId);
+            if (activity == null) {
+                continue;
+            }
+            batch.add(new UserBulkRepository.ActivityRow(userId, activity.lastLoginAt(), activity.lastSeenAt()));
+            if (batch.size() == batchSize) {
+                updated += write(batch);
+                batch.clear();
+            }
+        }
+        updated += write(batch);
+        logger.debug("Flushed activity of {} users", updated);
+        return updated;
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    private int write(List<UserBulkRepository.ActivityRow> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        try {
+            return userBulkRepository.updateActivity(batch);
+        } catch (RuntimeException e) {
+            // Данные не критичны: пачка теряется, следующие сбросы продолжают работать
+            logger.warn("Failed to flush activity of {} users: {}", batch.size(), e.getMessage());
+            return 0;
+        }
+    }
+}
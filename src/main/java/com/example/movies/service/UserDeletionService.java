@@ -0,0 +1,221 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.model.User;
+import com.example.movies.model.UserDeletionJob;
+import com.example.movies.repository.UserBulkRepository;
+import com.example.movies.repository.UserDeletionJobRepository;
+import com.example.movies.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.IntSupplier;
+
+// Удаление пользователей в два этапа. Запрос только помечает пользователя удалённым
+// (он сразу пропадает из выборок и теряет токены) и ставит задание. Фоновый обработчик
+// пачками чистит записи на курсы, снимает преподавателя с курсов, передаёт новости и
+// события служебному пользователю и в конце удаляет строку. Каждая пачка - короткая
+// транзакция, поэтому блокировки не держатся долго, а прогресс виден в задании.
+@Service
+public class UserDeletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDeletionService.class);
+
+    // Служебный владелец новостей и событий удалённых пользователей. Создаётся в db/init.sql
+    // и ищется по флагу system_account; имя и email зарезервированы в RegistrationService
+    public static final String TOMBSTONE_USERNAME = "deleted_user";
+    public static final String TOMBSTONE_EMAIL = "deleted_user@localhost";
+
+    private final UserRepository userRepository;
+    private final UserDeletionJobRepository jobRepository;
+    private final UserBulkRepository userBulkRepository;
+    private final TokenRevocationService tokenRevocationService;
+    private final RoleStatisticsService roleStatisticsService;
+    private final CourseService courseService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long staleMs;
+    private final int maxAttempts;
+
+    private volatile Long tombstoneId;
+
+    public UserDeletionService(UserRepository userRepository,
+                               UserDeletionJobRepository jobRepository,
+                               UserBulkRepository userBulkRepository,
+                               TokenRevocationService tokenRevocationService,
+                               RoleStatisticsService roleStatisticsService,
+                               CourseService courseService,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${users.deletion.batch-size:1000}") int batchSize,
+                               @Value("${users.deletion.stale-ms:300000}") long staleMs,
+                               @Value("${users.deletion.max-attempts:5}") int maxAttempts) {
+        this.userRepository = userRepository;
+        this.jobRepository = jobRepository;
+        this.userBulkRepository = userBulkRepository;
+        this.tokenRevocationService = tokenRevocationService;
+        this.roleStatisticsService = roleStatisticsService;
+        this.courseService = courseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.staleMs = staleMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Мягкое удаление и постановка задания; пусто, если пользователя нет или он уже удаляется
+    @Transactional
+    public Optional<UserDeletionJob> requestDeletion(Long userId) {
+        Optional<User> optionalUser = userRepository.findById(userId);
+        if (optionalUser.isEmpty() || optionalUser.get().getDeletedAt() != null
+                || optionalUser.get().isSystemAccount()) {
+            return Optional.empty();
+        }
+        User user = optionalUser.get();
+        user.setDeletedAt(LocalDateTime.now());
+        tokenRevocationService.revokeAll(user);
+        UserDeletionJob job = jobRepository.save(new UserDeletionJob(user.getId(), user.getUsername()));
+        roleStatisticsService.invalidate();
+        logger.info("Queued deletion job {} for user {}", job.getId(), user.getUsername());
+        return Optional.of(job);
+    }
+
+    public Optional<UserDeletionJob> getJob(Long jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    // Повтор упавшего задания вручную, в том числе исчерпавшего попытки; пусто, если задание не FAILED
+    @Transactional
+    public Optional<UserDeletionJob> retry(Long jobId) {
+        return jobRepository.findById(jobId)
+                .filter(job -> job.getStatus() == UserDeletionJob.Status.FAILED)
+                .map(job -> {
+                    job.setAttempts(0);
+                    job.setNextAttemptAt(LocalDateTime.now());
+                    job.setUpdatedAt(LocalDateTime.now());
+                    logger.info("Deletion job {} for user {} scheduled for retry", job.getId(), job.getUsername());
+                    return jobRepository.save(job);
+                });
+    }
+
+    // Обрабатывает задания по одному, пока они есть
+    @Scheduled(fixedDelayString = "${users.deletion.poll-ms:2000}")
+    public void processPending() {
+        UserDeletionJob job;
+        while ((job = claim()) != null) {
+            process(job);
+        }
+    }
+
+    private UserDeletionJob claim() {
+        LocalDateTime now = LocalDateTime.now();
+        return transactionTemplate.execute(status -> jobRepository.findClaimable(
+                        UserDeletionJob.Status.PENDING, UserDeletionJob.Status.RUNNING, UserDeletionJob.Status.FAILED,
+                        now.minus(Duration.ofMillis(staleMs)), now, Limit.of(1))
+                .stream().findFirst()
+                .map(job -> {
+                    job.setStatus(UserDeletionJob.Status.RUNNING);
+                    job.setAttempts(job.getAttempts() + 1);
+                    job.setNextAttemptAt(null);
+                    job.setUpdatedAt(LocalDateTime.now());
+                    return jobRepository.save(job);
+                })
+                .orElse(null));
+    }
+
+    // Шаги идемпотентны, поэтому перехваченное после сбоя задание просто проходит их заново
+    void process(UserDeletionJob job) {
+        Long userId = job.getUserId();
+        try {
+            job = runStep(job, "enrollments", () -> {
+                // Освободившиеся места сразу получает очередь курса
+                UserBulkRepository.EnrollmentBatch removed = userBulkRepository.deleteEnrollmentsBatch(userId, batchSize);
+                removed.courseIds().forEach(courseService::fillFromWaitlist);
+                return removed.deleted();
+            });
+            job = runStep(job, "courses", () -> userBulkRepository.unassignCoursesBatch(userId, batchSize));
+            Long tombstone = tombstoneId();
+            job = runStep(job, "news", () -> userBulkRepository.reassignNewsBatch(userId, tombstone, batchSize));
+            job = runStep(job, "events", () -> userBulkRepository.reassignEventsBatch(userId, tombstone, batchSize));
+            job.setStep("purge");
+            job.setProcessedRows(job.getProcessedRows() + userBulkRepository.purgeUser(userId));
+            job.setStatus(UserDeletionJob.Status.DONE);
+            job.setError(null);
+            job.setCompletedAt(LocalDateTime.now());
+            logger.info("Deletion job {} for user {} done, {} rows", job.getId(), job.getUsername(), job.getProcessedRows());
+        } catch (RuntimeException e) {
+            logger.error("Deletion job {} for user {} failed at {}: {}",
+                    job.getId(), job.getUsername(), job.getStep(), e.getMessage(), e);
+            job.setStatus(UserDeletionJob.Status.FAILED);
+            job.setError(e.getMessage());
+            job.setNextAttemptAt(nextAttemptAt(job.getAttempts()));
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        jobRepository.save(job);
+    }
+
+    // Повторяет пачку, пока она что-то меняет; прогресс сохраняется после каждой пачки
+    private UserDeletionJob runStep(UserDeletionJob job, String step, IntSupplier batch) {
+        job.setStep(step);
+        int rows;
+        while ((rows = batch.getAsInt()) > 0) {
+            job.setProcessedRows(job.getProcessedRows() + rows);
+            job.setUpdatedAt(LocalDateTime.now());
+            job = jobRepository.save(job);
+        }
+        return job;
+    }
+
+    // Пауза перед повтором: stale-ms, затем вдвое больше после каждого сбоя (не больше 64 * stale-ms).
+    // null - попытки исчерпаны, задание ждёт ручного повтора
+    private LocalDateTime nextAttemptAt(int attempts) {
+        if (attempts >= maxAttempts) {
+            return null;
+        }
+        long delayMs = staleMs << Math.min(attempts - 1, 6);
+        return LocalDateTime.now().plus(Duration.ofMillis(delayMs));
+    }
+
+    private Long tombstoneId() {
+        Long id = tombstoneId;
+        if (id == null) {
+            User tombstone = userRepository.findFirstBySystemAccountTrueOrderByIdAsc();
+            if (tombstone == null) {
+                throw new IllegalStateException("System account for deleted users is missing, see db/init.sql");
+            }
+            id = tombstone.getId();
+            tombstoneId = id;
+        }
+        return id;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.service;
+
+import com.example.movies.repository.UserBulkRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+// Потоковая выгрузка пользователей в CSV/NDJSON: строки читаются курсором и сразу пишутся
+// в выходной поток, поэтому расход памяти не зависит от числа пользователей.
+@Service
+public class UserExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserExportService.class);
+
+    public enum Format { CSV, NDJSON }
+
+    private static final String CSV_HEADER = "id,username,email,firstName,lastName,createdAt,roles";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final UserBulkRepository userBulkRepository;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public UserExportService(UserBulkRepository userBulkRepository,
+                             ObjectMapper objectMapper,
+                             @Value("${export.users.fetch-size:1000}") int fetchSize) {
+        this.userBulkRepository = userBulkRepository;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    // Роли в CSV перечисляются через ';' в одной колонке, в NDJSON - массивом
+    @Transactional(readOnly = true)
+    public long export(OutputStream out, Format format) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        JsonGenerator generator = format == Format.NDJSON ? objectMapper.getFactory().createGenerator(writer) : null;
+        if (generator != null) {
+            // Объекты разделяются переводом строки вместо пробела по умолчанию
+            generator.setRootValueSeparator(null);
+        }
+        long[] count = {0};
+        try {
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            userBulkRepository.streamAll(fetchSize, row -> {
+                try {
+                    if (generator != null) {
+                        writeJson(generator, row);
+                    } else {
+                        writeCsv(writer, row);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                count[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // Клиент оборвал соединение: курсор закрывается вместе с транзакцией
+            logger.warn("User export aborted after {} rows: {}", count[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+        if (generator != null) {
+            generator.flush();
+        }
+        writer.flush();
+        logger.info("Exported {} users as {}", count[0], format);
+        return count[0];
+    }
+
+    private static void writeJson(JsonGenerator generator, UserBulkRepository.ExportRow row) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", row.id());
+        generator.writeStringField("username", row.username());
+        generator.writeStringField("email", row.email());
+        generator.writeStringField("firstName", row.firstName());
+        generator.writeStringField("lastName", row.lastName());
+        generator.writeStringField("createdAt", row.createdAt() != null ? row.createdAt().toString() : null);
+        generator.writeArrayFieldStart("roles");
+        if (row.roles() != null) {
+            for (String role : row.roles().split(";")) {
+                generator.writeString(role);
+            }
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeCsv(Writer writer, UserBulkRepository.ExportRow row) throws IOException {
+        writer.write(Long.toString(row.id()));
+        writer.write(',');
+        writeCsvField(writer, row.username());
+        writer.write(',');
+        writeCsvField(writer, row.email());
+        writer.write(',');
+        writeCsvField(writer, row.firstName());
+        writer.write(',');
+        writeCsvField(writer, row.lastName());
+        writer.write(',');
+        writeCsvField(writer, row.createdAt() != null ? row.createdAt().toString() : null);
+        writer.write(',');
+        writeCsvField(writer, row.roles());
+        writer.write('\n');
+    }
+
+    // Значения с запятой, кавычкой или переводом строки берутся в кавычки, кавычки удваиваются
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
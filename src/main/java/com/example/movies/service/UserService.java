@@ -23,23 +23,53 @@
  */
 package com.example.movies.service;
 
+import com.example.movies.dto.CursorPageDTO;
+import com.example.movies.dto.SearchSliceDTO;
+import com.example.movies.dto.UserDTO;
+import com.example.movies.dto.UserSearchResultDTO;
+import com.example.movies.model.Role;
 import com.example.movies.model.User;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.RowEstimateRepository;
 import com.example.movies.repository.UserRepository;
+import com.example.movies.util.CountMode;
+import com.example.movies.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final RoleRepository roleRepository;
+    private final RowEstimateRepository rowEstimateRepository;
+    private final String similarityThreshold;
+    private final int maxSearchCandidates;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository,
+                       RoleRepository roleRepository,
+                       RowEstimateRepository rowEstimateRepository,
+                       @Value("${search.users.similarity-threshold:0.5}") double similarityThreshold,
+                       @Value("${search.users.max-candidates:1000}") int maxSearchCandidates) {
         this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.rowEstimateRepository = rowEstimateRepository;
+        this.similarityThreshold = String.valueOf(similarityThreshold);
+        this.maxSearchCandidates = maxSearchCandidates;
     }
 
     public List<User> getAllUsers() {
@@ -55,7 +85,7 @@ public class UserService {
     }
 
     public List<User> getUsersByRole(String roleName) {
-        return userRepository.findByRoles_Name(roleName);
+        return userRepository.findWithRolesByRoleName(roleName);
     }
 
     public User saveUser(User user) {
@@ -77,4 +107,155 @@ public class UserService {
     public Page<User> findAll(int page, int size) {
         return userRepository.findAll(Pageable.ofSize(size).withPage(page));
     }
+
+    // Страница DTO за постоянное число запросов: страница, count и роли всех пользователей страницы
+    public Page<UserDTO> findAllDTOs(int page, int size) {
+        return (Page<UserDTO>) findAllDTOs(page, size, CountMode.EXACT);
+    }
+
+    // При EXACT и APPROX возвращается Page, при NONE - Slice без общего числа
+    public Slice<UserDTO> findAllDTOs(int page, int size, CountMode count) {
+        Pageable pageable = Pageable.ofSize(size).withPage(page);
+        return withRoles(switch (count) {
+            case EXACT -> userRepository.findAllDTOs(pageable);
+            case NONE -> userRepository.findAllDTOsAsSlice(pageable);
+            case APPROX -> CountMode.approximatePage(userRepository.findAllDTOsAsSlice(pageable),
+                    rowEstimateRepository.estimateUsers());
+        });
+    }
+
+    public Page<UserDTO> findStudentDTOs(int page, String nameLike) {
+        return (Page<UserDTO>) findStudentDTOs(page, nameLike, CountMode.EXACT);
+    }
+
+    public Slice<UserDTO> findStudentDTOs(int page, String nameLike, CountMode count) {
+        Pageable pageable = Pageable.ofSize(10).withPage(page);
+        String role = "ROLE_STUDENT";
+        if (nameLike != null && !nameLike.isEmpty()) {
+            return withRoles(switch (count) {
+                case EXACT -> userRepository.findDTOsByRoleNameAndUsernameContaining(role, nameLike, pageable);
+                case NONE -> userRepository.findDTOsByRoleNameAndUsernameContainingAsSlice(role, nameLike, pageable);
+                case APPROX -> CountMode.approximatePage(
+                        userRepository.findDTOsByRoleNameAndUsernameContainingAsSlice(role, nameLike, pageable),
+                        estimateUsersByRole(role, nameLike));
+            });
+        }
+        return withRoles(switch (count) {
+            case EXACT -> userRepository.findDTOsByRoleName(role, pageable);
+            case NONE -> userRepository.findDTOsByRoleNameAsSlice(role, pageable);
+            case APPROX -> CountMode.approximatePage(userRepository.findDTOsByRoleNameAsSlice(role, pageable),
+                    estimateUsersByRole(role, null));
+        });
+    }
+
+    private long estimateUsersByRole(String roleName, String nameLike) {
+        Role role = roleRepository.findByName(roleName);
+        if (role == null) {
+            return 0;
+        }
+        return nameLike != null
+                ? rowEstimateRepository.estimateUsersByRoleAndUsernameContaining(role.getId(), nameLike)
+                : rowEstimateRepository.estimateUsersByRole(role.getId());
+    }
+
+    // Нечёткий поиск по логину, имени, фамилии и email с ранжированием по похожести.
+    // role - имя роли с префиксом ROLE_ или без него, null - без фильтра.
+    // truncated в ответе: совпадений больше search.users.max-candidates, ранжированы не все
+    @Transactional(readOnly = true)
+    public SearchSliceDTO<UserSearchResultDTO> search(String query, String role, int page, int size) {
+        Pageable pageable = Pageable.ofSize(size).withPage(page);
+        Long roleId = null;
+        if (role != null && !role.isBlank()) {
+            // "student", " Student " и "role_student" означают одну роль, как при импорте
+            String name = role.trim().toUpperCase(Locale.ROOT);
+            Role found = roleRepository.findByName(name.startsWith("ROLE_") ? name : "ROLE_" + name);
+            if (found == null) {
+                return new SearchSliceDTO<>(List.of(), pageable, false, false);
+            }
+            roleId = found.getId();
+        }
+        userRepository.setWordSimilarityThreshold(similarityThreshold);
+        List<Object[]> rows = userRepository.searchUsers(query, roleId, maxSearchCandidates,
+                size + 1, (int) pageable.getOffset());
+        List<UserSearchResultDTO> results = new ArrayList<>(Math.min(rows.size(), size));
+        for (int i = 0; i < rows.size() && i < size; i++) {
+            Object[] row = rows.get(i);
+            results.add(new UserSearchResultDTO(((Number) row[0]).longValue(), (String) row[1], (String) row[2],
+                    (String) row[3], (String) row[4], ((Number) row[5]).doubleValue()));
+        }
+        // За пределами списка кандидатов строк нет, но он мог быть обрезан
+        boolean truncated = rows.isEmpty()
+                ? pageable.getOffset() >= maxSearchCandidates
+                : ((Number) rows.get(0)[6]).longValue() >= maxSearchCandidates;
+        return new SearchSliceDTO<>(results, pageable, rows.size() > size, truncated);
+    }
+
+    // Keyset-пагинация: cursor - значение nextCursor предыдущей страницы, null - первая страница.
+    // Общее число считается только при withTotal.
+    public CursorPageDTO<UserDTO> findAllAfter(String cursor, int size, boolean withTotal) {
+        Limit limit = Limit.of(size + 1);
+        List<UserDTO> rows;
+        if (cursor == null) {
+            rows = userRepository.findFirstDTOs(limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = userRepository.findDTOsAfter(after.key(), after.id(), limit);
+        }
+        return toCursorPage(rows, size, withTotal ? userRepository.count() : null);
+    }
+
+    public CursorPageDTO<UserDTO> findStudentsAfter(String cursor, int size, String nameLike, boolean withTotal) {
+        Limit limit = Limit.of(size + 1);
+        KeysetCursor after = cursor != null ? KeysetCursor.decode(cursor) : null;
+        boolean byName = nameLike != null && !nameLike.isEmpty();
+        List<UserDTO> rows;
+        if (byName) {
+            rows = after == null
+                    ? userRepository.findFirstDTOsByRoleNameAndUsernameContaining("ROLE_STUDENT", nameLike, limit)
+                    : userRepository.findDTOsByRoleNameAndUsernameContainingAfter("ROLE_STUDENT", nameLike,
+                            after.key(), after.id(), limit);
+        } else {
+            rows = after == null
+                    ? userRepository.findFirstDTOsByRoleName("ROLE_STUDENT", limit)
+                    : userRepository.findDTOsByRoleNameAfter("ROLE_STUDENT", after.key(), after.id(), limit);
+        }
+        Long total = null;
+        if (withTotal) {
+            total = byName
+                    ? userRepository.countByRoles_NameAndUsernameContainingIgnoreCase("ROLE_STUDENT", nameLike)
+                    : userRepository.countByRoles_Name("ROLE_STUDENT");
+        }
+        return toCursorPage(rows, size, total);
+    }
+
+    // Запрашивается size + 1 строк: лишняя строка означает, что есть следующая страница
+    private CursorPageDTO<UserDTO> toCursorPage(List<UserDTO> rows, int size, Long total) {
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            UserDTO last = rows.get(size - 1);
+            nextCursor = new KeysetCursor(last.getUsername(), last.getId()).encode();
+        }
+        withRoles(rows);
+        return new CursorPageDTO<>(rows, nextCursor, total);
+    }
+
+    private <S extends Slice<UserDTO>> S withRoles(S page) {
+        withRoles(page.getContent());
+        return page;
+    }
+
+    private void withRoles(List<UserDTO> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Long, UserDTO> byId = new HashMap<>();
+        for (UserDTO dto : users) {
+            dto.setRoles(new HashSet<>());
+            byId.put(dto.getId(), dto);
+        }
+        for (Object[] row : userRepository.findRoleNamesByUserIds(byId.keySet())) {
+            byId.get((Long) row[0]).getRoles().add((String) row[1]);
+        }
+    }
 } 
\ No newline at end of file
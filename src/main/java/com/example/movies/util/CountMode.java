@@ -0,0 +1,57 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.example.movies.util;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+
+import java.util.Locale;
+
+// Как считать общее число строк для постраничных списков:
+// EXACT - отдельный COUNT(*), NONE - без подсчёта (Slice), APPROX - оценка планировщика
+public enum CountMode {
+    EXACT, NONE, APPROX;
+
+    // Значение параметра запроса count: true/exact, false/none, approx; null - EXACT
+    public static CountMode parse(String value) {
+        if (value == null || value.isBlank()) {
+            return EXACT;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "exact" -> EXACT;
+            case "false", "none" -> NONE;
+            case "approx", "estimate" -> APPROX;
+            default -> throw new IllegalArgumentException("Unsupported count mode: " + value);
+        };
+    }
+
+    // Страница с оценочным total. По Slice известно, есть ли следующая страница:
+    // на последней total точный, иначе не меньше уже увиденного.
+    public static <T> Page<T> approximatePage(Slice<T> slice, long estimate) {
+        long seen = slice.getPageable().getOffset() + slice.getNumberOfElements();
+        long total = slice.hasNext() ? Math.max(estimate, seen + 1) : seen;
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+}
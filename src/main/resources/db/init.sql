@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2025 Kudzeri
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+-- Объекты БД, которые не описываются через JPA. Выполняется при каждом старте
+-- после обновления схемы Hibernate, поэтому все команды идемпотентны.
+
+-- Нечёткий поиск пользователей: триграммный GIN-индекс по имени, фамилии, логину и email.
+-- Выражение должно совпадать с UserRepository.SEARCH_TEXT, иначе индекс не используется.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_users_search_trgm ON users
+    USING gin ((username || ' ' || first_name || ' ' || last_name || ' ' || email) gin_trgm_ops);
+
+-- Счётчик занятых мест курса ведёт CourseService. Курсы, записанные до появления счётчика
+-- (или в обход сервиса), получают его по фактическим записям; уже ведущиеся счётчики не трогаются.
+UPDATE courses c SET enrolled_count = s.cnt
+FROM (SELECT course_id, count(*) AS cnt FROM course_students GROUP BY course_id) s
+WHERE s.course_id = c.id AND c.enrolled_count = 0;
+
+-- Поиск курсов (CourseSearchRepository). Название и описание - полнотекстовый GIN-индекс
+-- с русской конфигурацией, имя преподавателя - триграммный индекс для ILIKE по подстроке.
+-- Выражения должны совпадать с SEARCH_DOCUMENT и TEACHER_NAME в репозитории.
+CREATE INDEX IF NOT EXISTS idx_courses_search_fts ON courses
+    USING gin (to_tsvector('russian', coalesce(title, '') || ' ' || coalesce(description, '')));
+CREATE INDEX IF NOT EXISTS idx_users_name_trgm ON users
+    USING gin ((username || ' ' || first_name || ' ' || last_name) gin_trgm_ops);
+
+-- Текст ошибки задания удаления (UserDeletionJob.error). ddl-auto=update не меняет тип
+-- существующей колонки, созданной раньше как varchar(255); для text команда ничего не делает.
+ALTER TABLE user_deletion_jobs ALTER COLUMN error TYPE text;
+
+-- Служебный пользователь, которому UserDeletionService передаёт новости и события удалённых
+-- пользователей. Ищется по флагу system_account, а не по имени; имя и email зарезервированы
+-- в RegistrationService. Пароль "!" не является хешем BCrypt, войти под ним нельзя - по нему же
+-- узнаётся служебный пользователь, созданный раньше самим сервисом.
+UPDATE users SET system_account = true
+WHERE username = 'deleted_user' AND email = 'deleted_user@localhost' AND password = '!'
+    AND NOT EXISTS (SELECT 1 FROM users WHERE system_account);
+INSERT INTO users (username, email, password, first_name, last_name,
+    subscribed_to_newsletter, token_version, created_at, system_account)
+SELECT 'deleted_user', 'deleted_user@localhost', '!', 'Deleted', 'User', false, 0, LOCALTIMESTAMP, true
+WHERE NOT EXISTS (SELECT 1 FROM users WHERE system_account)
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,104 @@
+package com.example.movies.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginThrottleTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    // Тест: после исчерпания ёмкости попытки отклоняются, а после паузы снова разрешаются
+    @Test
+    public void testBurstThenRefill() {
+        AtomicLong clock = new AtomicLong(0);
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(),
+                new LoginThrottle.Limit(3, SECOND), new LoginThrottle.Limit(1000, 1), 1000, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.tryAcquire("student1", "10.0.0.1"));
+        }
+        assertTrue(throttle.tryAcquire("Student1", "10.0.0.1") > 0, "username key must be case-insensitive");
+
+        clock.addAndGet(SECOND);
+        assertEquals(0, throttle.tryAcquire("student1", "10.0.0.1"));
+        assertTrue(throttle.tryAcquire("student1", "10.0.0.1") > 0);
+    }
+
+    // Тест: ограничение по IP не зависит от перебираемых имён пользователей
+    @Test
+    public void testIpLimitAcrossUsernames() {
+        AtomicLong clock = new AtomicLong(0);
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(),
+                new LoginThrottle.Limit(1000, 1), new LoginThrottle.Limit(10, SECOND), 1000, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, throttle.tryAcquire("user" + i, "10.0.0.2"));
+        }
+        assertEquals(1, throttle.tryAcquire("user-next", "10.0.0.2"));
+        assertEquals(0, throttle.tryAcquire("user-next", "10.0.0.3"));
+    }
+
+    // Тест: число отслеживаемых ключей ограничено при переборе случайных имён
+    @Test
+    public void testMemoryIsBounded() {
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(),
+                new LoginThrottle.Limit(5, SECOND), new LoginThrottle.Limit(5, SECOND), 1000, System::nanoTime);
+
+        for (int i = 0; i < 50_000; i++) {
+            throttle.tryAcquire("random" + i, "192.168." + (i / 256 % 256) + "." + (i % 256));
+        }
+        assertTrue(throttle.trackedKeys() <= 2_000, "tracked keys: " + throttle.trackedKeys());
+    }
+
+    // Тест: при высокой конкуренции на один ключ ограничитель не пропускает лишнего
+    @Test
+    public void testConcurrentAttemptsOnSingleAccount() throws Exception {
+        int capacity = 5;
+        long interval = TimeUnit.MILLISECONDS.toNanos(100);
+        LoginThrottle throttle = new LoginThrottle(new SimpleMeterRegistry(),
+                new LoginThrottle.Limit(capacity, interval), new LoginThrottle.Limit(Integer.MAX_VALUE, 1),
+                100_000, System::nanoTime);
+
+        int threads = 16;
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        LongAdder allowed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        long begin = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            String ip = "10.1.0." + t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long deadline = begin + durationNanos;
+                while (System.nanoTime() < deadline) {
+                    if (throttle.tryAcquire("victim", ip) == 0) {
+                        allowed.increment();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+
+        long maxAllowed = capacity + elapsed / interval + 1;
+        assertTrue(allowed.sum() <= maxAllowed, "allowed " + allowed.sum() + " > " + maxAllowed);
+        assertTrue(allowed.sum() >= capacity);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.movies.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RoleRegistryTests {
+
+    // Тест: маска principal собирается из известных ролей, неизвестные не дают битов
+    @Test
+    public void testPrincipalRoleMask() {
+        UserPrincipal principal = new UserPrincipal(1L, "teacher", null, List.of(
+                new SimpleGrantedAuthority("ROLE_TEACHER"),
+                new SimpleGrantedAuthority("ROLE_CUSTOM")));
+
+        assertEquals(RoleRegistry.TEACHER, principal.getRoleMask());
+        assertTrue(principal.hasRole(RoleRegistry.TEACHER));
+        assertTrue(principal.hasRole(RoleRegistry.ADMIN | RoleRegistry.TEACHER));
+        assertFalse(principal.hasRole(RoleRegistry.STUDENT));
+        assertEquals(0, RoleRegistry.bit("ROLE_CUSTOM"));
+    }
+}
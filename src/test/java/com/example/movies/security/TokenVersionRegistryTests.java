@@ -0,0 +1,65 @@
+package com.example.movies.security;
+
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.service.TokenRevocationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без @Transactional: проверяется, что версия в памяти меняется только после коммита
+@SpringBootTest(properties = "users.deletion.poll-ms=3600000")
+public class TokenVersionRegistryTests {
+
+    @Autowired
+    private TokenVersionRegistry tokenVersionRegistry;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        cleanUp();
+        userId = userRepository.save(new User("token_version_user", "token_version_user@test.local", "x", "T", "V")).getId();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id IN (SELECT id FROM users WHERE username = 'token_version_user')");
+        jdbcTemplate.update("DELETE FROM users WHERE username = 'token_version_user'");
+    }
+
+    // Тест: откаченный отзыв токенов не меняет версию в памяти, закоммиченный - меняет
+    @Test
+    public void testBumpAppliesAfterCommit() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            tokenRevocationService.revokeAll(userRepository.findById(userId).orElseThrow());
+            assertTrue(tokenVersionRegistry.isCurrent(userId, 0));
+            status.setRollbackOnly();
+        });
+        assertTrue(tokenVersionRegistry.isCurrent(userId, 0));
+        assertEquals(0, userRepository.findById(userId).orElseThrow().getTokenVersion());
+
+        tokenRevocationService.revokeAll(userRepository.findById(userId).orElseThrow());
+        assertFalse(tokenVersionRegistry.isCurrent(userId, 0));
+        assertTrue(tokenVersionRegistry.isCurrent(userId, 1));
+    }
+}
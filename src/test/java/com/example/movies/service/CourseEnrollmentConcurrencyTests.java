@@ -0,0 +1,172 @@
+package com.example.movies.service;
+
+import com.example.movies.model.Course;
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.UserBulkRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без @Transactional: каждая запись - отдельная закоммиченная транзакция, как в запросах
+@SpringBootTest(properties = "spring.datasource.hikari.maximum-pool-size=32")
+public class CourseEnrollmentConcurrencyTests {
+
+    private static final int STUDENTS = 500;
+    private static final int CAPACITY = 50;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long courseId;
+    private List<Long> studentIds;
+
+    @BeforeEach
+    public void setUp() {
+        cleanUp();
+        Role studentRole = roleRepository.findByName("ROLE_STUDENT");
+        if (studentRole == null) {
+            studentRole = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        List<User> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            User user = new User("seat_test_" + i, "seat_test_" + i + "@test.local", "x", "S", "S");
+            user.setRoles(Set.of(studentRole));
+            students.add(user);
+        }
+        studentIds = new ArrayList<>(userBulkRepository.insertAll(students).values());
+
+        Course course = new Course();
+        course.setTitle("seat_test course");
+        course.setCapacity(CAPACITY);
+        courseId = courseRepository.save(course).getId();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM course_waitlist WHERE course_id IN (SELECT id FROM courses WHERE title = 'seat_test course')");
+        jdbcTemplate.update("DELETE FROM course_students WHERE course_id IN (SELECT id FROM courses WHERE title = 'seat_test course')");
+        jdbcTemplate.update("DELETE FROM courses WHERE title = 'seat_test course'");
+        jdbcTemplate.update("DELETE FROM users_roles WHERE user_id IN (SELECT id FROM users WHERE username LIKE 'seat\\_test\\_%')");
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'seat\\_test\\_%'");
+    }
+
+    // Тест: 500 параллельных записей на курс с 50 местами - ровно 50 записанных, остальные в очереди
+    // по порядку; отчисление переводит в курс первого из очереди
+    @Test
+    public void testNoOverbookingUnderContention() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CourseService.EnrollmentResult>> results = new ArrayList<>();
+        for (Long studentId : studentIds) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return courseService.enrollStudent(courseId, studentId);
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        int enrolled = 0;
+        List<Long> positions = new ArrayList<>();
+        for (Future<CourseService.EnrollmentResult> result : results) {
+            CourseService.EnrollmentResult r = result.get();
+            if (r.status() == CourseService.EnrollmentStatus.ENROLLED) {
+                enrolled++;
+            } else {
+                positions.add(r.waitlistPosition());
+            }
+        }
+        assertEquals(CAPACITY, enrolled);
+        assertEquals(CAPACITY, count("SELECT count(*) FROM course_students WHERE course_id = ?"));
+        assertEquals(CAPACITY, count("SELECT enrolled_count FROM courses WHERE id = ?"));
+        assertEquals(STUDENTS - CAPACITY, count("SELECT count(*) FROM course_waitlist WHERE course_id = ?"));
+        assertEquals(STUDENTS - CAPACITY, positions.size());
+        assertTrue(positions.stream().allMatch(p -> p >= 1 && p <= STUDENTS - CAPACITY));
+
+        Long first = jdbcTemplate.queryForObject(
+                "SELECT student_id FROM course_waitlist WHERE course_id = ? ORDER BY id LIMIT 1", Long.class, courseId);
+        Long leaving = jdbcTemplate.queryForObject(
+                "SELECT student_id FROM course_students WHERE course_id = ? LIMIT 1", Long.class, courseId);
+        CourseService.RemovalResult removal = courseService.removeStudentFromCourse(courseId, leaving);
+
+        assertEquals(List.of(first), removal.promoted());
+        assertEquals(CAPACITY, count("SELECT count(*) FROM course_students WHERE course_id = ?"));
+        assertEquals(CAPACITY, count("SELECT enrolled_count FROM courses WHERE id = ?"));
+        assertEquals(STUDENTS - CAPACITY - 1, count("SELECT count(*) FROM course_waitlist WHERE course_id = ?"));
+    }
+
+    // Тест: записи идут одновременно с отчислениями всех первых студентов. Освобождённое место не должно
+    // пропасть, пока в очереди кто-то есть: в конце курс заполнен, счётчик совпадает с записями
+    @Test
+    public void testEnrollmentsRacingRemovalsKeepSeatsFilled() throws Exception {
+        List<Long> initial = studentIds.subList(0, CAPACITY);
+        for (Long studentId : initial) {
+            courseService.enrollStudent(courseId, studentId);
+        }
+        List<Long> newcomers = studentIds.subList(CAPACITY, STUDENTS);
+
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        int removed = 0;
+        for (int i = 0; i < newcomers.size(); i++) {
+            Long studentId = newcomers.get(i);
+            tasks.add(executor.submit(() -> {
+                start.await();
+                return courseService.enrollStudent(courseId, studentId);
+            }));
+            if (i % 9 == 0 && removed < initial.size()) {
+                Long leaving = initial.get(removed++);
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    return courseService.removeStudentFromCourse(courseId, leaving);
+                }));
+            }
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+
+        assertEquals(CAPACITY, removed);
+        assertEquals(CAPACITY, count("SELECT count(*) FROM course_students WHERE course_id = ?"));
+        assertEquals(CAPACITY, count("SELECT enrolled_count FROM courses WHERE id = ?"));
+        assertEquals(newcomers.size() - CAPACITY, count("SELECT count(*) FROM course_waitlist WHERE course_id = ?"));
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class, courseId);
+    }
+}
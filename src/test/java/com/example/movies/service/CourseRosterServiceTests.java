@@ -0,0 +1,168 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.RosterUpdateResultDTO;
+import com.example.movies.exception.ResourceNotFoundException;
+import com.example.movies.model.Course;
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.UserBulkRepository;
+import com.example.movies.service.CourseRosterService.RosterMode;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "users.deletion.poll-ms=3600000")
+@Transactional
+public class CourseRosterServiceTests {
+
+    private static final int STUDENTS = 300;
+
+    @Autowired
+    private CourseRosterService courseRosterService;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final List<Long> students = new ArrayList<>();
+    private Long outsider;
+
+    @BeforeEach
+    public void setUp() {
+        Role student = roleRepository.findByName("ROLE_STUDENT");
+        if (student == null) {
+            student = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            User user = new User("roster_test_" + i, "roster_test_" + i + "@test.local", "x", "S", "S");
+            user.setRoles(Set.of(student));
+            users.add(user);
+        }
+        users.add(new User("roster_test_outsider", "roster_test_outsider@test.local", "x", "O", "O"));
+        Map<String, Long> ids = userBulkRepository.insertAll(users);
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(ids.get("roster_test_" + i));
+        }
+        outsider = ids.get("roster_test_outsider");
+    }
+
+    // Тест: 300 студентов добавляются одним вызовом, счётчик мест совпадает с составом
+    @Test
+    public void testAddManyStudents() {
+        Long courseId = createCourse(null);
+
+        RosterUpdateResultDTO result = courseRosterService.updateRoster(courseId, RosterMode.ADD, students);
+
+        assertEquals(students, result.getAdded());
+        assertTrue(result.getWaitlisted().isEmpty());
+        assertEquals(STUDENTS, rosterSize(courseId));
+        assertEquals(STUDENTS, enrolledCount(courseId));
+
+        // Повтор ничего не меняет
+        RosterUpdateResultDTO again = courseRosterService.updateRoster(courseId, RosterMode.ADD, students);
+        assertTrue(again.getAdded().isEmpty());
+        assertEquals(STUDENTS, enrolledCount(courseId));
+    }
+
+    // Тест: сверх вместимости студенты встают в очередь в порядке списка, не-студенты отклоняются
+    @Test
+    public void testAddOverCapacityGoesToWaitlist() {
+        Long courseId = createCourse(10);
+        List<Long> request = new ArrayList<>(students.subList(0, 15));
+        request.add(outsider);
+        request.add(students.get(0));
+
+        RosterUpdateResultDTO result = courseRosterService.updateRoster(courseId, RosterMode.ADD, request);
+
+        assertEquals(students.subList(0, 10), result.getAdded());
+        assertEquals(students.subList(10, 15), result.getWaitlisted());
+        assertEquals(List.of(outsider), result.getInvalid());
+        assertEquals(10, enrolledCount(courseId));
+        assertEquals(students.subList(10, 15), jdbcTemplate.queryForList(
+                "SELECT student_id FROM course_waitlist WHERE course_id = ? ORDER BY id", Long.class, courseId));
+
+        // Повтор: стоящие в очереди не считаются добавленными в неё заново
+        RosterUpdateResultDTO again = courseRosterService.updateRoster(courseId, RosterMode.ADD, students.subList(10, 17));
+        assertTrue(again.getAdded().isEmpty());
+        assertEquals(students.subList(15, 17), again.getWaitlisted());
+    }
+
+    // Тест: замена отчисляет отсутствующих в списке и добавляет новых
+    @Test
+    public void testReplaceComputesDiff() {
+        Long courseId = createCourse(null);
+        courseRosterService.updateRoster(courseId, RosterMode.ADD, students.subList(0, 100));
+
+        RosterUpdateResultDTO result = courseRosterService.updateRoster(courseId, RosterMode.REPLACE, students.subList(50, 200));
+
+        assertEquals(students.subList(100, 200), result.getAdded());
+        assertEquals(Set.copyOf(students.subList(0, 50)), Set.copyOf(result.getRemoved()));
+        assertEquals(150, rosterSize(courseId));
+        assertEquals(150, enrolledCount(courseId));
+    }
+
+    // Тест: отчисление освобождает места для очереди, отчисленный из очереди место не получает
+    @Test
+    public void testRemovePromotesFromWaitlist() {
+        Long courseId = createCourse(3);
+        courseRosterService.updateRoster(courseId, RosterMode.ADD, students.subList(0, 6));
+
+        RosterUpdateResultDTO result = courseRosterService.updateRoster(courseId, RosterMode.REMOVE,
+                List.of(students.get(0), students.get(1), students.get(5)));
+
+        assertEquals(List.of(students.get(0), students.get(1)), result.getRemoved());
+        assertEquals(List.of(students.get(3), students.get(4)), result.getPromoted());
+        assertEquals(3, enrolledCount(courseId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM course_waitlist WHERE course_id = ?", Integer.class, courseId));
+    }
+
+    // Тест: несуществующий курс - ResourceNotFoundException
+    @Test
+    public void testUnknownCourse() {
+        assertThrows(ResourceNotFoundException.class,
+                () -> courseRosterService.updateRoster(-1L, RosterMode.ADD, students.subList(0, 1)));
+    }
+
+    private Long createCourse(Integer capacity) {
+        Course course = new Course();
+        course.setTitle("Roster course");
+        course.setCapacity(capacity);
+        Long id = courseRepository.save(course).getId();
+        entityManager.flush();
+        return id;
+    }
+
+    private int rosterSize(Long courseId) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM course_students WHERE course_id = ?", Integer.class, courseId);
+    }
+
+    private int enrolledCount(Long courseId) {
+        return jdbcTemplate.queryForObject("SELECT enrolled_count FROM courses WHERE id = ?", Integer.class, courseId);
+    }
+}
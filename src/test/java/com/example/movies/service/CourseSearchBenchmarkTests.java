@@ -0,0 +1,142 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.CourseSummaryDTO;
+import com.example.movies.model.User;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.CourseSearchRepository;
+import com.example.movies.repository.UserBulkRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Каталог из 100 000 синтетических курсов и 20 000 пользователей (500 из них ведут курсы).
+// Проверяется, что поиск идёт по индексам из db/init.sql без подсказок планировщику, и в лог пишется
+// время против старых LIKE-фильтров. Не входит в обычный mvn test, запуск: mvn test -Pbenchmark.
+// Без @Transactional: планировщик оценивает GIN-индексы по статистике VACUUM, поэтому данные
+// коммитятся один раз на класс и удаляются после всех тестов
+@Tag("benchmark")
+@SpringBootTest(properties = "users.deletion.poll-ms=3600000")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CourseSearchBenchmarkTests {
+
+    private static final Logger logger = LoggerFactory.getLogger(CourseSearchBenchmarkTests.class);
+
+    private static final int COURSES = 100_000;
+    private static final int USERS = 20_000;
+    private static final int TEACHERS = 500;
+    private static final int RUNS = 20;
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseSearchRepository courseSearchRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private UserBulkRepository userBulkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long rareTeacherId;
+
+    @BeforeAll
+    public void setUp() {
+        cleanUp();
+        List<User> users = new ArrayList<>(USERS);
+        users.add(new User("bench_teacher_0", "bench_teacher_0@test.local", "x", "Михаил", "Остроградский"));
+        for (int i = 1; i < USERS; i++) {
+            String name = (i < TEACHERS ? "bench_teacher_" : "bench_user_") + i;
+            users.add(new User(name, name + "@test.local", "x", "Иван", "Петров"));
+        }
+        Map<String, Long> ids = userBulkRepository.insertAll(users);
+        rareTeacherId = ids.get("bench_teacher_0");
+
+        // Каждый тысячный курс - про квантовую механику, остальные с общим описанием
+        jdbcTemplate.update(
+                "WITH t AS (SELECT array_agg(id ORDER BY id) AS ids FROM users WHERE username LIKE 'bench\\_teacher\\_%') " +
+                "INSERT INTO courses (title, description, teacher_id) " +
+                "SELECT 'Синтетический курс ' || g, CASE WHEN g % 1000 = 0 " +
+                "THEN 'Основы квантовой механики для начинающих' " +
+                "ELSE 'Общий курс по программированию и алгоритмам, поток ' || (g % 97) END, " +
+                "t.ids[1 + g % array_length(t.ids, 1)] FROM generate_series(1, ?) g, t", COURSES);
+        jdbcTemplate.execute("VACUUM ANALYZE courses");
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+    }
+
+    @AfterAll
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM courses WHERE title LIKE 'Синтетический курс %'");
+        jdbcTemplate.update("DELETE FROM users WHERE username LIKE 'bench\\_%'");
+        jdbcTemplate.execute("VACUUM ANALYZE courses");
+        jdbcTemplate.execute("VACUUM ANALYZE users");
+    }
+
+    // Тест: полнотекстовый поиск идёт по GIN-индексу и учитывает морфологию
+    @Test
+    public void testFullTextSearchUsesIndex() {
+        String plan = String.join("\n", courseSearchRepository.explain("квантовая механика", null, "relevance", 21, 0));
+        assertTrue(plan.contains("idx_courses_search_fts"), plan);
+
+        Slice<CourseSummaryDTO> page = courseService.searchCourses("квантовая механика", null, "relevance", 0, 20);
+        assertEquals(20, page.getNumberOfElements());
+        assertTrue(page.hasNext());
+        page.forEach(course -> assertTrue(course.getDescription().contains("квантовой механики")));
+
+        report("full-text", () -> courseService.searchCourses("квантовая механика", null, "relevance", 0, 20),
+                () -> courseRepository.findByFilters(null, "квантовой", null, PageRequest.of(0, 20)));
+    }
+
+    // Тест: поиск по части имени преподавателя идёт по триграммному индексу
+    @Test
+    public void testTeacherSearchUsesTrigramIndex() {
+        String plan = String.join("\n", courseSearchRepository.explain(null, "остроград", "newest", 21, 0));
+        assertTrue(plan.contains("idx_users_name_trgm"), plan);
+        assertTrue(plan.contains("idx_courses_teacher_id"), plan);
+
+        Slice<CourseSummaryDTO> page = courseService.searchCourses(null, "остроград", "newest", 0, 20);
+        assertEquals(20, page.getNumberOfElements());
+        page.forEach(course -> assertEquals(rareTeacherId, course.getTeacherId()));
+        assertTrue(page.getContent().get(0).getId() > page.getContent().get(19).getId());
+
+        report("teacher", () -> courseService.searchCourses(null, "остроград", "newest", 0, 20),
+                () -> courseRepository.findByFilters(null, null, "bench_teacher_0", PageRequest.of(0, 20)));
+    }
+
+    // Медиана RUNS запусков поиска и старого фильтра findByFilters на тех же данных
+    private void report(String name, Runnable search, Runnable legacy) {
+        logger.info("CourseSearch {} on {} courses: search {} ms, LIKE filters {} ms (median of {})",
+                name, COURSES, String.format("%.2f", median(search)), String.format("%.2f", median(legacy)), RUNS);
+    }
+
+    private double median(Runnable action) {
+        action.run();
+        double[] times = new double[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long begin = System.nanoTime();
+            action.run();
+            times[i] = (System.nanoTime() - begin) / 1_000_000.0;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+}
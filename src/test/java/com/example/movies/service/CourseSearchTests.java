@@ -0,0 +1,89 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.CourseSummaryDTO;
+import com.example.movies.model.Course;
+import com.example.movies.model.User;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.CourseSearchRepository;
+import com.example.movies.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// На маленьком наборе планировщик выбирает seq scan, поэтому он отключается в транзакции теста:
+// так проверяется, что выражения запроса совпадают с индексами из db/init.sql
+@SpringBootTest(properties = "users.deletion.poll-ms=3600000")
+@Transactional
+public class CourseSearchTests {
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseSearchRepository courseSearchRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User teacher;
+
+    @BeforeEach
+    public void setUp() {
+        teacher = userRepository.save(new User("search_teacher", "search_teacher@test.local", "x", "Михаил", "Остроградский"));
+        for (int i = 0; i < 3; i++) {
+            Course course = new Course();
+            course.setTitle("Search course " + i);
+            course.setDescription(i == 0 ? "Основы квантовой механики" : "Алгоритмы и структуры данных");
+            course.setTeacher(teacher);
+            courseRepository.save(course);
+        }
+        entityManager.flush();
+        jdbcTemplate.execute("SET LOCAL enable_seqscan = off");
+    }
+
+    // Тест: полнотекстовый поиск идёт по GIN-индексу и учитывает морфологию
+    @Test
+    public void testFullTextSearchUsesIndex() {
+        String plan = String.join("\n", courseSearchRepository.explain("квантовая механика", null, "relevance", 21, 0));
+        assertTrue(plan.contains("idx_courses_search_fts"), plan);
+
+        Slice<CourseSummaryDTO> page = courseService.searchCourses("квантовая механика", null, "relevance", 0, 20);
+        assertEquals(1, page.getNumberOfElements());
+        assertEquals("Search course 0", page.getContent().get(0).getTitle());
+    }
+
+    // Тест: поиск по части имени преподавателя идёт по триграммному индексу
+    @Test
+    public void testTeacherSearchUsesTrigramIndex() {
+        String plan = String.join("\n", courseSearchRepository.explain(null, "остроград", "newest", 21, 0));
+        assertTrue(plan.contains("idx_users_name_trgm"), plan);
+
+        Slice<CourseSummaryDTO> page = courseService.searchCourses(null, "остроград", "newest", 0, 20);
+        assertEquals(3, page.getNumberOfElements());
+        page.forEach(course -> assertEquals(teacher.getId(), course.getTeacherId()));
+        assertTrue(page.getContent().get(0).getId() > page.getContent().get(2).getId());
+    }
+
+    // Тест: неизвестная сортировка отклоняется
+    @Test
+    public void testUnknownSortRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> courseService.searchCourses("курс", null, "id; DROP TABLE courses", 0, 20));
+    }
+}
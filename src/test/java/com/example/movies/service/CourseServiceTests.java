@@ -0,0 +1,164 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.CourseSummaryDTO;
+import com.example.movies.exception.ResourceNotFoundException;
+import com.example.movies.model.Course;
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.CourseWaitlistRepository;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.util.CountMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        "security.token-revocation.refresh-ms=3600000",
+        "security.token-revocation.purge-ms=3600000",
+        "users.deletion.poll-ms=3600000"
+})
+@Transactional
+public class CourseServiceTests {
+
+    @Autowired
+    private CourseService courseService;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CourseWaitlistRepository waitlistRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User teacher;
+
+    @BeforeEach
+    public void setUp() {
+        teacher = userRepository.save(new User("catalog_teacher", "catalog_teacher@test.local", "x", "T", "T"));
+        Set<User> students = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            students.add(userRepository.save(new User("catalog_student_" + i, "catalog_student_" + i + "@test.local", "x", "S", "S")));
+        }
+        for (int i = 0; i < 5; i++) {
+            Course course = new Course();
+            course.setTitle("Catalog course " + i);
+            course.setTeacher(i == 0 ? null : teacher);
+            course.setStudents(i < 3 ? students : new HashSet<>());
+            courseRepository.save(course);
+        }
+        entityManager.flush();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Тест: страница каталога - один запрос строк и один COUNT, независимо от числа курсов и студентов
+    @Test
+    public void testCatalogPageUsesAggregateQuery() {
+        entityManager.clear();
+        statistics.clear();
+        Slice<CourseSummaryDTO> page = courseService.findCatalog(null, null, "catalog_teacher", 0, 3, CountMode.EXACT);
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(4, ((Page<CourseSummaryDTO>) page).getTotalElements());
+
+        assertEquals(3, page.getNumberOfElements());
+        for (CourseSummaryDTO course : page) {
+            assertEquals(teacher.getId(), course.getTeacherId());
+            assertEquals(course.getTitle().endsWith(" 1") || course.getTitle().endsWith(" 2") ? 3 : 0,
+                    course.getStudentCount());
+        }
+
+        // Курс без преподавателя виден без фильтра по преподавателю
+        Slice<CourseSummaryDTO> all = courseService.findCatalog("Catalog course 0", null, null, 0, 10, CountMode.NONE);
+        assertEquals(1, all.getNumberOfElements());
+        assertNull(all.getContent().get(0).getTeacherId());
+        assertEquals(3, all.getContent().get(0).getStudentCount());
+    }
+
+    // Тест: запись - постоянное число запросов (с удалением из очереди), повторная запись распознаётся по числу вставленных строк
+    @Test
+    public void testEnrollmentIsDirectJoinTableInsert() {
+        Role studentRole = roleRepository.findByName("ROLE_STUDENT");
+        if (studentRole == null) {
+            studentRole = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        User student = new User("catalog_enrollee", "catalog_enrollee@test.local", "x", "E", "E");
+        student.setRoles(Set.of(studentRole));
+        student = userRepository.save(student);
+        Long courseId = courseRepository.findAll().stream()
+                .filter(c -> c.getTitle().equals("Catalog course 1")).findFirst().orElseThrow().getId();
+        entityManager.flush();
+        Long studentId = student.getId();
+
+        entityManager.clear();
+        statistics.clear();
+        courseService.enrollStudent(courseId, studentId);
+        assertEquals(4, statistics.getPrepareStatementCount());
+
+        IllegalArgumentException again = assertThrows(IllegalArgumentException.class,
+                () -> courseService.enrollStudent(courseId, studentId));
+        assertEquals("Student is already enrolled in this course", again.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> courseService.enrollStudent(courseId, teacher.getId()));
+        assertThrows(ResourceNotFoundException.class, () -> courseService.enrollStudent(courseId, -1L));
+
+        assertTrue(courseService.removeStudentFromCourse(courseId, studentId).removed());
+        assertFalse(courseService.removeStudentFromCourse(courseId, studentId).removed());
+    }
+
+    // Тест: студент из очереди, записавшийся на появившееся место, уходит из очереди
+    @Test
+    public void testEnrollmentRemovesWaitlistEntry() {
+        Role studentRole = roleRepository.findByName("ROLE_STUDENT");
+        if (studentRole == null) {
+            studentRole = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        User first = new User("catalog_waiting_0", "catalog_waiting_0@test.local", "x", "W", "W");
+        first.setRoles(Set.of(studentRole));
+        first = userRepository.save(first);
+        User second = new User("catalog_waiting_1", "catalog_waiting_1@test.local", "x", "W", "W");
+        second.setRoles(Set.of(studentRole));
+        second = userRepository.save(second);
+        Course course = new Course();
+        course.setTitle("Catalog waitlist course");
+        course.setCapacity(1);
+        course = courseRepository.save(course);
+        entityManager.flush();
+        Long courseId = course.getId();
+
+        assertEquals(CourseService.EnrollmentStatus.ENROLLED, courseService.enrollStudent(courseId, first.getId()).status());
+        assertEquals(CourseService.EnrollmentStatus.WAITLISTED, courseService.enrollStudent(courseId, second.getId()).status());
+        assertEquals(1, waitlistRepository.findPosition(courseId, second.getId()));
+
+        entityManager.createNativeQuery("UPDATE courses SET capacity = 2 WHERE id = :id")
+                .setParameter("id", courseId).executeUpdate();
+        assertEquals(CourseService.EnrollmentStatus.ENROLLED, courseService.enrollStudent(courseId, second.getId()).status());
+        assertEquals(0, waitlistRepository.findPosition(courseId, second.getId()));
+    }
+}
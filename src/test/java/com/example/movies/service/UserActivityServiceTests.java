@@ -0,0 +1,80 @@
+package com.example.movies.service;
+
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "users.activity.flush-ms=3600000",
+        "users.activity.batch-size=2"
+})
+@Transactional
+public class UserActivityServiceTests {
+
+    @Autowired
+    private UserActivityService userActivityService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User first;
+    private User second;
+    private User third;
+
+    @BeforeEach
+    public void setUp() {
+        userActivityService.flush();
+        first = userRepository.save(new User("activity_1", "activity_1@test.local", "x", "A", "A"));
+        second = userRepository.save(new User("activity_2", "activity_2@test.local", "x", "B", "B"));
+        third = userRepository.save(new User("activity_3", "activity_3@test.local", "x", "C", "C"));
+        userRepository.flush();
+    }
+
+    // Тест: повторные обращения схлопываются в одну строку на пользователя, сброс идёт пачками
+    @Test
+    public void testActivityIsCoalescedAndFlushed() {
+        userActivityService.recordLogin(first.getId());
+        userActivityService.recordSeen(first.getId());
+        userActivityService.recordSeen(first.getId());
+        userActivityService.recordSeen(second.getId());
+        userActivityService.recordSeen(third.getId());
+
+        assertEquals(3, userActivityService.flush());
+        assertEquals(0, userActivityService.flush());
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+                "SELECT last_login_at, last_seen_at FROM users WHERE id = ?", first.getId());
+        assertNotNull(row.get("last_login_at"));
+        assertFalse(((Timestamp) row.get("last_seen_at")).before((Timestamp) row.get("last_login_at")));
+        assertNull(jdbcTemplate.queryForObject(
+                "SELECT last_login_at FROM users WHERE id = ?", Timestamp.class, second.getId()));
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT last_seen_at FROM users WHERE id = ?", Timestamp.class, third.getId()));
+    }
+
+    // Тест: сохранение загруженной до сброса сущности не откатывает время активности
+    @Test
+    public void testEntitySaveKeepsFlushedActivity() {
+        userActivityService.recordLogin(first.getId());
+        userActivityService.flush();
+
+        first.setFirstName("Z");
+        userRepository.saveAndFlush(first);
+
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT last_login_at FROM users WHERE id = ?", Timestamp.class, first.getId()));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.movies.service;
+
+import com.example.movies.model.Course;
+import com.example.movies.model.News;
+import com.example.movies.model.User;
+import com.example.movies.model.UserDeletionJob;
+import com.example.movies.repository.CourseRepository;
+import com.example.movies.repository.NewsRepository;
+import com.example.movies.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Без @Transactional: обработчик коммитит каждую пачку отдельно, как в работе приложения
+@SpringBootTest(properties = {
+        "users.deletion.batch-size=1",
+        "users.deletion.poll-ms=3600000"
+})
+public class UserDeletionServiceTests {
+
+    @Autowired
+    private UserDeletionService userDeletionService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private NewsRepository newsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User teacher;
+    private User student;
+    private Course course;
+
+    @BeforeEach
+    public void setUp() {
+        cleanUp();
+        teacher = userRepository.save(new User("deletion_teacher", "deletion_teacher@test.local", "x", "T", "T"));
+        student = userRepository.save(new User("deletion_student", "deletion_student@test.local", "x", "S", "S"));
+        course = new Course();
+        course.setTitle("Deletion course");
+        course.setTeacher(teacher);
+        course.setStudents(Set.of(student));
+        course = courseRepository.save(course);
+        newsRepository.save(new News("n1", "text", teacher));
+        newsRepository.save(new News("n2", "text", teacher));
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS deletion_test_fail ON news");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS deletion_test_fail()");
+        jdbcTemplate.update("DELETE FROM news WHERE title IN ('n1', 'n2') AND content = 'text'");
+        jdbcTemplate.update("DELETE FROM course_students WHERE course_id IN (SELECT id FROM courses WHERE title = 'Deletion course')");
+        jdbcTemplate.update("DELETE FROM courses WHERE title = 'Deletion course'");
+        jdbcTemplate.update("DELETE FROM user_deletion_jobs WHERE username IN ('deletion_teacher', 'deletion_student')");
+        jdbcTemplate.update("DELETE FROM refresh_tokens WHERE user_id IN (SELECT id FROM users WHERE username IN ('deletion_teacher', 'deletion_student'))");
+        jdbcTemplate.update("DELETE FROM users_roles WHERE user_id IN (SELECT id FROM users WHERE username IN ('deletion_teacher', 'deletion_student'))");
+        jdbcTemplate.update("DELETE FROM users WHERE username IN ('deletion_teacher', 'deletion_student')");
+    }
+
+    // Тест: пользователь сразу скрыт, обработчик пачками снимает ссылки и удаляет строку
+    @Test
+    public void testDeletionJobCleansReferences() {
+        UserDeletionJob studentJob = userDeletionService.requestDeletion(student.getId()).orElseThrow();
+        UserDeletionJob teacherJob = userDeletionService.requestDeletion(teacher.getId()).orElseThrow();
+        assertNull(userRepository.findByUsername("deletion_teacher"));
+        assertTrue(userDeletionService.requestDeletion(teacher.getId()).isEmpty());
+
+        userDeletionService.processPending();
+
+        UserDeletionJob doneStudent = userDeletionService.getJob(studentJob.getId()).orElseThrow();
+        UserDeletionJob doneTeacher = userDeletionService.getJob(teacherJob.getId()).orElseThrow();
+        assertEquals(UserDeletionJob.Status.DONE, doneStudent.getStatus());
+        assertEquals(UserDeletionJob.Status.DONE, doneTeacher.getStatus());
+        // Одна запись на курс и строка пользователя
+        assertEquals(2, doneStudent.getProcessedRows());
+        assertTrue(doneTeacher.getProcessedRows() >= 4);
+
+        Long tombstoneId = userRepository.findFirstBySystemAccountTrueOrderByIdAsc().getId();
+        assertEquals(0, count("SELECT count(*) FROM course_students WHERE course_id = ?", course.getId()));
+        assertEquals(0, count("SELECT count(*) FROM courses WHERE id = ? AND teacher_id IS NOT NULL", course.getId()));
+        assertEquals(2, count("SELECT count(*) FROM news WHERE title IN ('n1', 'n2') AND author_id = ?", tombstoneId));
+        assertEquals(0, count("SELECT count(*) FROM users WHERE id IN (?, ?)", teacher.getId(), student.getId()));
+    }
+
+    // Тест: упавшее задание повторяется, когда подходит время; исчерпавшее попытки - только вручную
+    @Test
+    public void testFailedJobsAreRetried() {
+        UserDeletionJob studentJob = userDeletionService.requestDeletion(student.getId()).orElseThrow();
+        UserDeletionJob teacherJob = userDeletionService.requestDeletion(teacher.getId()).orElseThrow();
+        jdbcTemplate.update("UPDATE user_deletion_jobs SET status = 'FAILED', attempts = 1, " +
+                "next_attempt_at = LOCALTIMESTAMP - interval '1 second' WHERE id = ?", studentJob.getId());
+        jdbcTemplate.update("UPDATE user_deletion_jobs SET status = 'FAILED', attempts = 5, " +
+                "next_attempt_at = NULL WHERE id = ?", teacherJob.getId());
+
+        userDeletionService.processPending();
+
+        UserDeletionJob retried = userDeletionService.getJob(studentJob.getId()).orElseThrow();
+        assertEquals(UserDeletionJob.Status.DONE, retried.getStatus());
+        assertEquals(2, retried.getAttempts());
+        assertEquals(UserDeletionJob.Status.FAILED, userDeletionService.getJob(teacherJob.getId()).orElseThrow().getStatus());
+
+        assertTrue(userDeletionService.retry(studentJob.getId()).isEmpty());
+        assertTrue(userDeletionService.retry(teacherJob.getId()).isPresent());
+        userDeletionService.processPending();
+
+        UserDeletionJob manual = userDeletionService.getJob(teacherJob.getId()).orElseThrow();
+        assertEquals(UserDeletionJob.Status.DONE, manual.getStatus());
+        assertEquals(1, manual.getAttempts());
+        assertEquals(0, count("SELECT count(*) FROM users WHERE id IN (?, ?)", teacher.getId(), student.getId()));
+    }
+
+    // Тест: длинное сообщение об ошибке (с текстом SQL) сохраняется, задание уходит в FAILED с повтором
+    @Test
+    public void testLongFailureMessageIsStored() {
+        jdbcTemplate.execute("CREATE FUNCTION deletion_test_fail() RETURNS trigger AS $$ BEGIN " +
+                "RAISE EXCEPTION '%', repeat('news update rejected ', 40); END $$ LANGUAGE plpgsql");
+        jdbcTemplate.execute("CREATE TRIGGER deletion_test_fail BEFORE UPDATE ON news " +
+                "FOR EACH ROW EXECUTE FUNCTION deletion_test_fail()");
+        UserDeletionJob job = userDeletionService.requestDeletion(teacher.getId()).orElseThrow();
+
+        userDeletionService.processPending();
+
+        UserDeletionJob failed = userDeletionService.getJob(job.getId()).orElseThrow();
+        assertEquals(UserDeletionJob.Status.FAILED, failed.getStatus());
+        assertEquals("news", failed.getStep());
+        assertTrue(failed.getError().length() > 255, failed.getError());
+        assertNotNull(failed.getNextAttemptAt());
+    }
+
+    private long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.movies.service;
+
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+public class UserExportServiceTests {
+
+    @Autowired
+    private UserExportService userExportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private User user;
+
+    @BeforeEach
+    public void setUp() {
+        Role student = roleRepository.findByName("ROLE_STUDENT");
+        if (student == null) {
+            student = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        user = new User("export_test", "export_test@test.local", "x", "Doe, \"Jr\"", "Export");
+        user.setRoles(Set.of(student));
+        user = userRepository.saveAndFlush(user);
+    }
+
+    // Тест: CSV содержит всех пользователей, роли из соединения и экранированные значения
+    @Test
+    public void testCsvExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = userExportService.export(out, UserExportService.Format.CSV);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(userRepository.count(), exported);
+        assertEquals(exported + 1, lines.length);
+        assertEquals("id,username,email,firstName,lastName,createdAt,roles", lines[0]);
+        String line = Arrays.stream(lines)
+                .filter(l -> l.startsWith(user.getId() + ","))
+                .findFirst().orElseThrow();
+        assertTrue(line.startsWith(user.getId() + ",export_test,export_test@test.local,\"Doe, \"\"Jr\"\"\",Export,"));
+        assertTrue(line.endsWith(",ROLE_STUDENT"));
+    }
+
+    // Тест: NDJSON - один объект на строку, роли массивом
+    @Test
+    public void testNdjsonExport() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = userExportService.export(out, UserExportService.Format.NDJSON);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(exported, lines.length);
+        assertTrue(Arrays.stream(lines).anyMatch(l ->
+                l.startsWith("{\"id\":" + user.getId() + ",\"username\":\"export_test\"")
+                        && l.endsWith("\"roles\":[\"ROLE_STUDENT\"]}")));
+    }
+}
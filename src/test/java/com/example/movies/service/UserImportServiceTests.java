@@ -0,0 +1,100 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.UserImportReportDTO;
+import com.example.movies.exception.DuplicateUserException;
+import com.example.movies.model.User;
+import com.example.movies.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+public class UserImportServiceTests {
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RegistrationService registrationService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // Тест: CSV импортируется с ролями и хешами паролей, ошибочные строки попадают в отчёт
+    @Test
+    public void testCsvImportReportsRowErrors() throws Exception {
+        userRepository.saveAndFlush(new User("import_test_taken", "import_test_taken@test.local", "x", "Taken", "User"));
+        String csv = String.join("\n",
+                "username,email,password,firstName,lastName,role",
+                "import_test_1,import_test_1@test.local,secret1,\"Doe, Jr.\",One,",
+                "import_test_2,import_test_2@test.local,secret2,Jane,Two,teacher",
+                "import_test_1,import_test_dup@test.local,secret3,John,Dup,",
+                "import_test_taken,import_test_new@test.local,secret4,John,Taken,",
+                "import_test_3,,secret5,John,NoEmail,",
+                "import_test_4,import_test_4@test.local,secret6,John,Role,nosuchrole",
+                "\"import_test_5,broken");
+
+        UserImportReportDTO report = userImportService.importUsers(new StringReader(csv), UserImportService.Format.CSV);
+
+        assertEquals(7, report.getProcessed());
+        assertEquals(2, report.getImported());
+        assertEquals(5, report.getFailed());
+        assertEquals(List.of(4L, 5L, 6L, 7L, 8L), report.getErrors().stream().map(UserImportReportDTO.RowError::getRow).toList());
+        assertEquals(RegistrationService.USERNAME_TAKEN, report.getErrors().get(0).getError());
+
+        User first = userRepository.findByUsername("import_test_1");
+        assertEquals("Doe, Jr.", first.getFirstName());
+        assertTrue(passwordEncoder.matches("secret1", first.getPassword()));
+        assertTrue(first.getRoles().stream().anyMatch(role -> role.getName().equals("ROLE_STUDENT")));
+        User second = userRepository.findByUsername("import_test_2");
+        assertTrue(second.getRoles().stream().anyMatch(role -> role.getName().equals("ROLE_TEACHER")));
+    }
+
+    // Тест: NDJSON импортируется построчно, битая строка не прерывает импорт
+    @Test
+    public void testNdjsonImport() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"username\":\"import_test_json\",\"email\":\"import_test_json@test.local\",\"password\":\"p\",\"firstName\":\"A\",\"lastName\":\"B\"}",
+                "{not json",
+                "",
+                "{\"username\":\"import_test_json2\",\"email\":\"import_test_json@test.local\",\"password\":\"p\",\"firstName\":\"A\",\"lastName\":\"B\"}");
+
+        UserImportReportDTO report = userImportService.importUsers(new StringReader(ndjson), UserImportService.Format.NDJSON);
+
+        assertEquals(3, report.getProcessed());
+        assertEquals(1, report.getImported());
+        assertEquals(RegistrationService.EMAIL_TAKEN, report.getErrors().get(1).getError());
+        assertTrue(userRepository.existsByUsername("import_test_json"));
+    }
+
+    // Тест: имя и email служебного пользователя заняты и для импорта, и для регистрации
+    @Test
+    public void testTombstoneCredentialsAreReserved() throws Exception {
+        String csv = String.join("\n",
+                "username,email,password,firstName,lastName",
+                UserDeletionService.TOMBSTONE_USERNAME + ",import_test_reserved@test.local,secret1,A,B",
+                "import_test_reserved," + UserDeletionService.TOMBSTONE_EMAIL + ",secret2,A,B");
+
+        UserImportReportDTO report = userImportService.importUsers(new StringReader(csv), UserImportService.Format.CSV);
+
+        assertEquals(0, report.getImported());
+        assertEquals(RegistrationService.USERNAME_TAKEN, report.getErrors().get(0).getError());
+        assertEquals(RegistrationService.EMAIL_TAKEN, report.getErrors().get(1).getError());
+        assertThrows(DuplicateUserException.class, () -> registrationService.checkAvailable(
+                UserDeletionService.TOMBSTONE_USERNAME, "import_test_reserved@test.local"));
+        assertThrows(DuplicateUserException.class, () -> registrationService.checkAvailable(
+                "import_test_reserved", UserDeletionService.TOMBSTONE_EMAIL));
+        assertNotNull(userRepository.findFirstBySystemAccountTrueOrderByIdAsc());
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.movies.service;
+
+import com.example.movies.dto.CursorPageDTO;
+import com.example.movies.dto.RoleStatsDTO;
+import com.example.movies.dto.SearchSliceDTO;
+import com.example.movies.dto.UserDTO;
+import com.example.movies.dto.UserSearchResultDTO;
+import com.example.movies.model.Role;
+import com.example.movies.model.User;
+import com.example.movies.repository.RoleRepository;
+import com.example.movies.repository.UserRepository;
+import com.example.movies.util.CountMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN",
+        // Фоновые обновления отзыва токенов не должны попадать в подсчёт запросов
+        "security.token-revocation.refresh-ms=3600000",
+        "security.token-revocation.purge-ms=3600000",
+        "users.deletion.poll-ms=3600000",
+        // Меньше, чем тестовых пользователей: проверяется признак обрезанного списка кандидатов
+        "search.users.max-candidates=50"
+})
+@Transactional
+public class UserServiceTests {
+
+    private static final int USERS = 60;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private RoleStatisticsService roleStatisticsService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        Role student = roleRepository.findByName("ROLE_STUDENT");
+        if (student == null) {
+            student = roleRepository.save(new Role("ROLE_STUDENT"));
+        }
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("stmt_test_" + i, "stmt_test_" + i + "@test.local", "x", "Test", "User");
+            user.setRoles(Set.of(student));
+            userRepository.save(user);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    // Тест: число запросов на страницу пользователей не зависит от размера страницы
+    @Test
+    public void testUserPageStatementCountIsConstant() {
+        long small = countStatements(() -> userService.findAllDTOs(0, 5));
+        long large = countStatements(() -> userService.findAllDTOs(0, 50));
+
+        assertEquals(small, large);
+        assertTrue(large <= 3, "statements per page: " + large);
+    }
+
+    // Тест: страница студентов содержит роли и загружается за постоянное число запросов
+    @Test
+    public void testStudentPageStatementCountIsConstant() {
+        long small = countStatements(() -> userService.findStudentDTOs(0, "stmt_test_1"));
+        Page<UserDTO> page = userService.findStudentDTOs(0, "stmt_test_");
+        entityManager.clear();
+        long large = countStatements(() -> userService.findStudentDTOs(0, "stmt_test_"));
+
+        assertEquals(small, large);
+        assertTrue(large <= 3, "statements per page: " + large);
+        assertEquals(10, page.getContent().size());
+        assertTrue(page.getContent().get(0).getRoles().contains("ROLE_STUDENT"));
+    }
+
+    // Тест: без подсчёта страница студентов обходится без COUNT, оценка даёт Page с total
+    @Test
+    public void testStudentPageCountModes() {
+        long exact = countStatements(() -> userService.findStudentDTOs(0, "stmt_test_", CountMode.EXACT));
+        long none = countStatements(() -> userService.findStudentDTOs(0, "stmt_test_", CountMode.NONE));
+        assertEquals(exact - 1, none);
+
+        Slice<UserDTO> slice = userService.findStudentDTOs(0, "stmt_test_", CountMode.NONE);
+        assertFalse(slice instanceof Page);
+        assertEquals(10, slice.getContent().size());
+        assertTrue(slice.hasNext());
+        assertFalse(slice.getContent().get(0).getRoles().isEmpty());
+
+        Slice<UserDTO> approx = userService.findStudentDTOs(5, "stmt_test_", CountMode.APPROX);
+        assertTrue(approx instanceof Page);
+        assertTrue(((Page<UserDTO>) approx).getTotalElements() >= USERS);
+    }
+
+    // Тест: пользователи роли загружаются вместе с ролями одним запросом
+    @Test
+    public void testUsersByRoleSingleStatement() {
+        long statements = countStatements(() -> {
+            List<User> users = userService.getUsersByRole("ROLE_STUDENT");
+            assertTrue(users.size() >= USERS);
+            users.forEach(user -> assertFalse(user.getRoles().isEmpty()));
+        });
+
+        assertEquals(1, statements);
+    }
+
+    // Тест: обход студентов по курсору возвращает каждого ровно один раз и в порядке имени
+    @Test
+    public void testStudentCursorWalk() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDTO<UserDTO> page = userService.findStudentsAfter(cursor, 7, "stmt_test_", false);
+            page.getContent().forEach(user -> seen.add(user.getUsername()));
+            assertNull(page.getTotal());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(USERS, seen.size());
+        assertEquals(USERS, new HashSet<>(seen).size());
+        List<String> sorted = new ArrayList<>(seen);
+        Collections.sort(sorted);
+        assertEquals(sorted, seen);
+    }
+
+    // Тест: нечёткий поиск находит пользователя по другой транслитерации фамилии и учитывает роль
+    @Test
+    public void testFuzzySearchToleratesTransliteration() {
+        User user = new User("stmt_test_search", "yaroslava.zhukovskaya@test.local", "x", "Yaroslava", "Zhukovskaya");
+        user.setRoles(Set.of(roleRepository.findByName("ROLE_STUDENT")));
+        userRepository.saveAndFlush(user);
+
+        SearchSliceDTO<UserSearchResultDTO> found = userService.search("jaroslava zhukovskaja", "STUDENT", 0, 10);
+        assertFalse(found.isEmpty());
+        assertFalse(found.isTruncated());
+        assertEquals("stmt_test_search", found.getContent().get(0).getUsername());
+
+        for (String role : List.of("student", " Student ", "role_student")) {
+            assertEquals("stmt_test_search", userService.search("jaroslava zhukovskaja", role, 0, 10)
+                    .getContent().get(0).getUsername(), role);
+        }
+
+        assertTrue(userService.search("jaroslava zhukovskaja", "ROLE_ADMIN", 0, 10).getContent().stream()
+                .noneMatch(result -> result.getUsername().equals("stmt_test_search")));
+    }
+
+    // Тест: при совпадений больше лимита кандидатов ответ помечен как обрезанный
+    @Test
+    public void testSearchReportsTruncatedCandidates() {
+        SearchSliceDTO<UserSearchResultDTO> first = userService.search("stmt_test", null, 0, 10);
+        assertTrue(first.isTruncated());
+        assertTrue(first.hasNext());
+
+        SearchSliceDTO<UserSearchResultDTO> beyond = userService.search("stmt_test", null, 5, 10);
+        assertTrue(beyond.isEmpty());
+        assertTrue(beyond.isTruncated());
+    }
+
+    // Тест: статистика ролей считается двумя агрегатными запросами и учитывает новых пользователей недели
+    @Test
+    public void testRoleStatisticsAggregatedInDatabase() {
+        roleStatisticsService.invalidate();
+        List<RoleStatsDTO> stats = new ArrayList<>();
+        long statements = countStatements(() -> stats.addAll(roleStatisticsService.getStatistics(4)));
+
+        assertEquals(2, statements);
+        RoleStatsDTO students = stats.stream()
+                .filter(role -> role.getName().equals("ROLE_STUDENT"))
+                .findFirst().orElseThrow();
+        assertTrue(students.getUsers() >= USERS);
+        assertEquals(4, students.getNewUsersPerWeek().size());
+        long thisWeek = students.getNewUsersPerWeek().get(LocalDate.now().with(DayOfWeek.MONDAY));
+        assertTrue(thisWeek >= USERS);
+
+        assertEquals(0, countStatements(() -> roleStatisticsService.getStatistics(4)));
+        roleStatisticsService.invalidate();
+    }
+
+    private long countStatements(Runnable action) {
+        entityManager.clear();
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+}
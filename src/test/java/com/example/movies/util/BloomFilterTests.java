@@ -0,0 +1,36 @@
+package com.example.movies.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTests {
+
+    // Тест: добавленные значения всегда находятся
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("student" + i + "@university.ru");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("student" + i + "@university.ru"));
+        }
+    }
+
+    // Тест: доля ложных срабатываний близка к заданной
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}